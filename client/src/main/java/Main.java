@@ -1,4 +1,6 @@
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
@@ -14,6 +16,7 @@ import serverFacade.ServerFacade;
 import serverFacade.WebSocketFacade;
 import ui.ChessboardUI;
 import ui.ClientException;
+import ui.Squares;
 
 import javax.websocket.ClientEndpoint;
 
@@ -34,6 +37,11 @@ public class Main {
             public void notify(String message) {
                 System.out.println("Notification: " + message);
             }
+
+            @Override
+            public void loadGame(ChessGame game) {
+                currentGame = game;
+            }
         };
 
 
@@ -91,6 +99,7 @@ public class Main {
                     case "resign":
                         break;
                     case "highlight":
+                        highlight(params);
                         break;
                     default:
                         printHelp();
@@ -114,19 +123,8 @@ public class Main {
         String to = params[1].toLowerCase();
         if (from.length() != 2 || to.length() != 2) throw new ClientException(400, "Expected: <file><rank> <file><rank>");
 
-        var positions=new ChessPosition[]{null, null};
-
-        var index=0;
-
-        for (var pos : new String[]{from, to}) {
-            var file=pos.charAt(0);
-            var rank=pos.charAt(1);
-
-            if (file < 97 || file > 104 || rank < 49 || rank > 56)
-                throw new ClientException(400, "Expected: <[a-h]><[1-8]> <[a-h]><[1-8]>");
-
-            positions[index++]=new ChessPosition(rank - 49, 7 - (file - 97));
-        }
+        if (currentGame == null) throw new ClientException(400, "Join a game first!");
+        var positions=new ChessPosition[]{Squares.parse(from), Squares.parse(to)};
 
         try {
             var piece=currentGame.getBoard().getPiece(positions[0]);
@@ -146,6 +144,30 @@ public class Main {
         }
     }
 
+    private static void highlight(String[] params) throws Exception {
+        if (params.length != 1) {
+            System.out.println("Usage: highlight <square>");
+            return;
+        }
+        if (currentGame == null) throw new ClientException(400, "Join or observe a game first!");
+
+        var position=Squares.parse(params[0].toLowerCase());
+
+        // legal moves come from the shared move cache, so repeated lookups of a position are cheap
+        var targets=new ArrayList<String>();
+        for (var move : currentGame.validMoves(position)) {
+            var target=Squares.format(move.getEndPosition());
+            if (!targets.contains(target)) targets.add(target);
+        }
+        Collections.sort(targets);
+
+        if (targets.isEmpty()) {
+            System.out.println("No legal moves from " + params[0]);
+        } else {
+            System.out.println(params[0] + " can move to: " + String.join(" ", targets));
+        }
+    }
+
     private static void register(String[] params) throws Exception {
         if (params.length != 3) {
             System.out.println("Usage: register <username> <password> <email>");
@@ -293,7 +315,7 @@ public class Main {
         if (authData == null) {
             System.out.println("Available commands:\nregister <username> <password> <email>\nlogin <username> <password>\nhelp\nquit");
         } else {
-            System.out.println("Available commands:\nlogout\nlist\ncreate <name>\njoin\nquit");
+            System.out.println("Available commands:\nlogout\nlist\ncreate <name>\njoin\nhighlight <square>\nquit");
         }
     }
 
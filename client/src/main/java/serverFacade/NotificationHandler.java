@@ -1,5 +1,13 @@
 package serverFacade;
 
+import chess.ChessGame;
+
 public interface NotificationHandler {
     void notify(String message);
-}
\ No newline at end of file
+
+    /**
+     * Called with the game each time the server sends the board, before it is displayed
+     */
+    default void loadGame(ChessGame game) {
+    }
+}
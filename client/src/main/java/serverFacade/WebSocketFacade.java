@@ -39,8 +39,9 @@ public class WebSocketFacade extends Endpoint {
                     var serverMessage=new Gson().fromJson(message, ServerMessage.class);
                     switch (serverMessage.getServerMessageType()) {
                         case LOAD_GAME -> {
-                            var gameMessage=fromJson(message, LoadGameMessage.class);
-                            notificationHandler.notify(ChessboardUI.displayGame(gameMessage.getGame(), true));
+                            var game=fromJson(message, LoadGameMessage.class).getGame();
+                            notificationHandler.loadGame(game);
+                            notificationHandler.notify(ChessboardUI.displayGame(game, true));
                         }
                         case ERROR -> {
                             var error=fromJson(message, ErrorMessage.class);
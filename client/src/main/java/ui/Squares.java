@@ -0,0 +1,26 @@
+package ui;
+
+import chess.ChessPosition;
+
+/**
+ * Converts between squares typed as a file and rank, like "e4", and board positions
+ */
+public class Squares {
+    private Squares() {}
+
+    public static ChessPosition parse(String square) throws ClientException {
+        if (square.length() != 2) throw new ClientException(400, "Expected: <file><rank>");
+
+        var file=square.charAt(0);
+        var rank=square.charAt(1);
+
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8')
+            throw new ClientException(400, "Expected: <[a-h]><[1-8]>");
+
+        return ChessPosition.of(rank - '0', file - 'a' + 1);
+    }
+
+    public static String format(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + (char) ('0' + position.getRow());
+    }
+}
@@ -0,0 +1,37 @@
+package clientTests;
+
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+import ui.ClientException;
+import ui.Squares;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SquaresTest {
+
+    @Test
+    void parsesCorners() throws ClientException {
+        assertEquals(new ChessPosition(1, 1), Squares.parse("a1"));
+        assertEquals(new ChessPosition(1, 8), Squares.parse("h1"));
+        assertEquals(new ChessPosition(8, 1), Squares.parse("a8"));
+        assertEquals(new ChessPosition(4, 5), Squares.parse("e4"));
+    }
+
+    @Test
+    void roundTripsEverySquare() throws ClientException {
+        for (char file='a'; file <= 'h'; file++) {
+            for (char rank='1'; rank <= '8'; rank++) {
+                var square="" + file + rank;
+                assertEquals(square, Squares.format(Squares.parse(square)));
+            }
+        }
+    }
+
+    @Test
+    void rejectsSquaresOffTheBoard() {
+        assertThrows(ClientException.class, () -> Squares.parse("i1"));
+        assertThrows(ClientException.class, () -> Squares.parse("a9"));
+        assertThrows(ClientException.class, () -> Squares.parse("a0"));
+        assertThrows(ClientException.class, () -> Squares.parse("e"));
+    }
+}
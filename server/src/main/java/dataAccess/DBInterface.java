@@ -2,6 +2,7 @@ package dataAccess;
 
 import model.AuthData;
 import model.GameData;
+import model.PositionMatch;
 import model.UserData;
 
 import java.util.List;
@@ -21,5 +22,6 @@ public interface DBInterface {
     GameData createGame(AuthData tok, GameData game) throws DataAccessException;
     void updateGame(AuthData tok, GameData game) throws DataAccessException;
     GameData getGame(AuthData tok, int id) throws DataAccessException;
+    List<PositionMatch> findGamesWithPosition(AuthData tok, long positionKey, int afterGameId, int limit) throws DataAccessException;
 
 }
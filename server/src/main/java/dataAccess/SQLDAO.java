@@ -1,10 +1,14 @@
 package dataAccess;
 
 import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.PositionCodec;
 import model.AuthData;
 import model.GameData;
+import model.PositionMatch;
 import model.UserData;
 
+import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +19,12 @@ import static java.sql.Types.NULL;
 public class SQLDAO implements DBInterface {
     private static SQLDAO DBInstance;
 
+    // games are stored as the moves played, one row each, plus a snapshot of the position
+    // every so often so loading a game only replays the moves since the last one
+    public static final int SNAPSHOT_INTERVAL = 16;
+    // positions a game has to remember to spot repetitions and the fifty-move rule
+    private static final int HISTORY_PLIES = 100;
+
     private final String[] createMyStuff = {
             """
           create database if not exists %DB_NAME%;
@@ -23,12 +33,36 @@ public class SQLDAO implements DBInterface {
           create table if not exists %DB_NAME%.games (
             id int not null auto_increment,
             name varchar(256) not null,
-            game TEXT not null,
+            game TEXT not null,  -- the board, for games stored before gameMoves; empty after
             currentTurn int not null,
             whitePlayer varchar(256),
             blackPlayer varchar(256),
             primary key (id)
           );
+          """,
+            """
+          create table if not exists %DB_NAME%.gameMoves (
+            gameId int not null,
+            ply int not null,
+            move smallint not null,
+            primary key (gameId, ply)
+          );
+          """,
+            """
+          create table if not exists %DB_NAME%.gameSnapshots (
+            gameId int not null,
+            ply int not null,
+            position varbinary(46) not null,  -- PositionCodec.MAX_BYTES
+            primary key (gameId, ply)
+          );
+          """,
+            """
+          create table if not exists %DB_NAME%.positions (
+            hash bigint not null,
+            gameId int not null,
+            ply int not null,
+            primary key (hash, gameId, ply)
+          );
           """,
             """
           create table if not exists %DB_NAME%.users (
@@ -51,17 +85,30 @@ public class SQLDAO implements DBInterface {
         T getClass(ResultSet rs) throws SQLException;
     }
 
+    private interface Transaction<T> {
+        T run(Connection conn) throws DataAccessException;
+    }
+
     private final Adapter<GameData> gameDataAdapter=rs -> new GameData(
             rs.getInt("id"),
             rs.getString("whitePlayer"),
             rs.getString("blackPlayer"),
             rs.getString("name"),
-            ChessGame.parseFromString(
+            rs.getString("game").isEmpty() ? null : ChessGame.parseFromString(
                     rs.getString("game"),
                     ChessGame.TeamColor.values()[rs.getInt("currentTurn")]
             )
     );
 
+    private record Snapshot(int gameId, int ply, byte[] position) {
+    }
+
+    private record StoredMove(int gameId, int ply, int move) {
+    }
+
+    private final Adapter<Snapshot> snapshotAdapter=rs -> new Snapshot(rs.getInt(1), rs.getInt(2), rs.getBytes(3));
+    private final Adapter<StoredMove> moveAdapter=rs -> new StoredMove(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+
     public SQLDAO() throws DataAccessException {
         startDB();
     }
@@ -117,8 +164,15 @@ public class SQLDAO implements DBInterface {
     }
 
     private DBResponse dbUpdate(String action, Object... params) throws DataAccessException {
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement preparedAction = getPreparedStatement(conn, action, params)) {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return dbUpdate(conn, action, params);
+        } catch (SQLException e) {
+            throw new DataAccessException(e.getMessage());
+        }
+    }
+
+    private DBResponse dbUpdate(Connection conn, String action, Object... params) throws DataAccessException {
+        try (PreparedStatement preparedAction = getPreparedStatement(conn, action, params)) {
 
             int numAffected = preparedAction.executeUpdate();
             int id = 0;
@@ -135,6 +189,26 @@ public class SQLDAO implements DBInterface {
             throw new DataAccessException(e.getMessage());
         }
     }
+
+    /**
+     * Runs updates on one connection and commits them together, or none of them if one fails
+     */
+    private <T> T inTransaction(Transaction<T> work) throws DataAccessException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                return result;
+            } catch (DataAccessException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            System.out.println("ERROR IN [inTransaction] " + e.getMessage());
+            throw new DataAccessException(e.getMessage());
+        }
+    }
     private static PreparedStatement getPreparedStatement(Connection conn, String action, Object[] params) throws DataAccessException, SQLException {
         var preparedAction = conn.prepareStatement(action, Statement.RETURN_GENERATED_KEYS);
 
@@ -144,7 +218,9 @@ public class SQLDAO implements DBInterface {
             switch (p) {
                 case null -> preparedAction.setNull(i + 1, NULL);
                 case Integer integer -> preparedAction.setInt(i + 1, integer);
+                case Long l -> preparedAction.setLong(i + 1, l);
                 case String s -> preparedAction.setString(i + 1, s);
+                case byte[] bytes -> preparedAction.setBytes(i + 1, bytes);
                 default -> {
                     //idk
                 }
@@ -167,7 +243,7 @@ public class SQLDAO implements DBInterface {
 
     @Override
     public void clear() throws DataAccessException {
-        var tables = new String[]{"games", "users", "authTokens"};
+        var tables = new String[]{"games", "gameMoves", "gameSnapshots", "positions", "users", "authTokens"};
         for (var table : tables) {
             var action = changeSQLActionINfo("truncate %DB_NAME%." + table);
             dbUpdate(action);
@@ -223,8 +299,10 @@ public class SQLDAO implements DBInterface {
     public List<GameData> listGames(AuthData tok) throws DataAccessException {
         tok = checkTokInDB(tok);
 
-        var action = changeSQLActionINfo("select * from %DB_NAME%.games;");
-        return dbExecute(action, gameDataAdapter);
+        // listing only shows who is playing, so the boards aren't rebuilt
+        var action = changeSQLActionINfo("select id, whitePlayer, blackPlayer, name from %DB_NAME%.games order by id;");
+        Adapter<GameData> listAdapter = rs -> new GameData(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), null);
+        return dbExecute(action, listAdapter);
     }
 
     @Override
@@ -263,15 +341,144 @@ public class SQLDAO implements DBInterface {
         if (game == null) throw new DataAccessException("bad request");
 
         var id = game.getGameId();
+        var myGame = game.getGame();
 
-        var action = changeSQLActionINfo("select * from %DB_NAME%.games where id=?;");
-        var results = dbExecute(action, gameDataAdapter, id);
+        var action = changeSQLActionINfo("select (select max(ply) from %DB_NAME%.gameSnapshots where gameId = g.id), "
+                + "(select max(ply) from %DB_NAME%.gameMoves where gameId = g.id) "
+                + "from %DB_NAME%.games g where g.id=?;");
+        Adapter<int[]> pliesAdapter = rs -> new int[]{rs.getObject(1) == null ? -1 : rs.getInt(1), rs.getInt(2)};
+        var results = dbExecute(action, pliesAdapter, id);
         if (results.isEmpty()) throw new DataAccessException("No game");
 
-        var newAction = changeSQLActionINfo("update %DB_NAME%.games set game = ?, currentTurn = ? where id = ?;");
-        var myGame = (ChessGame) game.getGame();
-        var currentTurn = myGame.getTeamTurn() == ChessGame.TeamColor.WHITE ? 0 : 1;
-        dbUpdate(newAction, myGame.serialize(), currentTurn, game.getGameId());
+        int snapshotPly = results.getFirst()[0];
+        if (snapshotPly < 0) {
+            // stored before move lists; from here on it is one
+            inTransaction(conn -> {
+                insertSnapshot(conn, id, myGame);
+                indexPositions(conn, id, myGame.getPlyCount(), new long[]{myGame.getZobristKey()});
+                return null;
+            });
+            return;
+        }
+        int storedPly = Math.max(snapshotPly, results.getFirst()[1]);
+        int loadedPly = myGame.getSetUpPly();
+        int ply = myGame.getPlyCount();
+
+        // moves stored since this game was loaded have to be ones it played and saved itself;
+        // otherwise another writer got in first and this game's moves don't follow on from theirs
+        if (storedPly != loadedPly) {
+            if (storedPly < loadedPly || storedPly > ply) throw new DataAccessException("game is out of date");
+            var stored = dbExecute(changeSQLActionINfo("select gameId, ply, move from %DB_NAME%.gameMoves "
+                    + "where gameId=? and ply > ? order by ply;"), moveAdapter, id, loadedPly);
+            var played = myGame.getMovesSince(loadedPly);
+            if (stored.size() != storedPly - loadedPly) throw new DataAccessException("game is out of date");
+            for (int i = 0; i < stored.size(); i++) {
+                if (stored.get(i).move() != played[i]) throw new DataAccessException("game is out of date");
+            }
+        }
+        if (ply == storedPly) return;
+
+        var moves = myGame.getMovesSince(storedPly);
+        var keys = myGame.getKeysSince(storedPly);
+        var insert = new StringBuilder(changeSQLActionINfo("insert into %DB_NAME%.gameMoves (gameId, ply, move) values "));
+        var params = new Object[3 * moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            insert.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            params[3 * i] = id;
+            params[3 * i + 1] = storedPly + i + 1;
+            params[3 * i + 2] = moves[i];
+        }
+        inTransaction(conn -> {
+            // two writers that both got past the check above clash on the key (gameId, ply) here
+            dbUpdate(conn, insert.append(';').toString(), params);
+            indexPositions(conn, id, storedPly + 1, keys);
+            if (ply / SNAPSHOT_INTERVAL > storedPly / SNAPSHOT_INTERVAL) {
+                insertSnapshot(conn, id, myGame);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Records that a game reached positions, the first at the given ply and the rest one ply apart
+     */
+    private void indexPositions(Connection conn, int id, int firstPly, long[] keys) throws DataAccessException {
+        var insert = new StringBuilder(changeSQLActionINfo("insert ignore into %DB_NAME%.positions (hash, gameId, ply) values "));
+        var params = new Object[3 * keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            insert.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            params[3 * i] = keys[i];
+            params[3 * i + 1] = id;
+            params[3 * i + 2] = firstPly + i;
+        }
+        dbUpdate(conn, insert.append(';').toString(), params);
+    }
+
+    private void insertSnapshot(Connection conn, int id, ChessGame game) throws DataAccessException {
+        var position = new byte[PositionCodec.encodedSize(game)];
+        PositionCodec.encode(game, ByteBuffer.wrap(position));
+        var action = changeSQLActionINfo("insert into %DB_NAME%.gameSnapshots (gameId, ply, position) values (?, ?, ?);");
+        dbUpdate(conn, action, id, game.getPlyCount(), position);
+    }
+
+    /**
+     * Reads a game and rebuilds it from its latest snapshot and the moves after it
+     *
+     * @return the game, or null if there is none with that id
+     */
+    private GameData loadGame(int id) throws DataAccessException {
+        var games = dbExecute(changeSQLActionINfo("select * from %DB_NAME%.games where id=?;"), gameDataAdapter, id);
+        if (games.isEmpty()) return null;
+        var game = games.getFirst();
+
+        var snapshots = dbExecute(changeSQLActionINfo("select gameId, ply, position from %DB_NAME%.gameSnapshots "
+                + "where gameId=? order by ply;"), snapshotAdapter, id);
+        ChessGame chessGame;
+        if (snapshots.isEmpty()) {
+            chessGame = game.getGame() == null ? new ChessGame() : game.getGame();
+        } else {
+            // a game replays from its latest snapshot, or from an earlier one when the moves in
+            // between are needed to spot repetitions, so only moves that far back are read
+            var moves = dbExecute(changeSQLActionINfo("select gameId, ply, move from %DB_NAME%.gameMoves "
+                    + "where gameId=? and ply > ? order by ply;"), moveAdapter,
+                    id, snapshots.getLast().ply() - HISTORY_PLIES - SNAPSHOT_INTERVAL);
+            chessGame = replay(snapshots, moves);
+        }
+        return new GameData(game.getGameId(), game.getWhiteUsername(), game.getBlackUsername(), game.getGameName(), chessGame);
+    }
+
+    /**
+     * @param snapshots a game's snapshots, oldest first
+     * @param moves     the game's moves from before the latest snapshot on, in order
+     */
+    private static ChessGame replay(List<Snapshot> snapshots, List<StoredMove> moves) throws DataAccessException {
+        var start = snapshots.getLast();
+        var game = PositionCodec.decode(ByteBuffer.wrap(start.position()));
+        // moves since the last capture or pawn move can come up again, so replay them too when
+        // there is a snapshot from before them and the moves after it were read
+        int needed = start.ply() - game.getHalfmoveClock();
+        if (game.getHalfmoveClock() > 0) {
+            for (var earlier : snapshots.reversed()) {
+                if (earlier.ply() <= needed) {
+                    if (!moves.isEmpty() && moves.getFirst().ply() <= earlier.ply() + 1) {
+                        start = earlier;
+                        game = PositionCodec.decode(ByteBuffer.wrap(start.position()));
+                    }
+                    break;
+                }
+            }
+        }
+
+        try {
+            for (var move : moves) {
+                if (move.ply() > start.ply()) {
+                    game.makeMove(move.move());
+                }
+            }
+        } catch (InvalidMoveException e) {
+            throw new DataAccessException("stored game is corrupt");
+        }
+        return game;
     }
 
     @Override
@@ -279,22 +486,39 @@ public class SQLDAO implements DBInterface {
         tok = checkTokInDB(tok);
         if (game == null) throw new DataAccessException("unauthorized");
 
-        var action = changeSQLActionINfo("insert into %DB_NAME%.games (name, game, currentTurn, whitePlayer, blackPlayer) values (?, ?, 0, ?, ?);");
+        var action = changeSQLActionINfo("insert into %DB_NAME%.games (name, game, currentTurn, whitePlayer, blackPlayer) values (?, '', 0, ?, ?);");
         var target = new ChessGame();
-        target.getBoard().resetBoard();
 
-        var tup = dbUpdate(action, game.getGameName(), target.serialize(), game.getWhiteUsername(), game.getBlackUsername());
-        return new GameData(tup.generatedID, game.getWhiteUsername(), game.getBlackUsername(), game.getGameName(), new ChessGame());
+        int id = inTransaction(conn -> {
+            var tup = dbUpdate(conn, action, game.getGameName(), game.getWhiteUsername(), game.getBlackUsername());
+            insertSnapshot(conn, tup.generatedID, target);
+            indexPositions(conn, tup.generatedID, 0, new long[]{target.getZobristKey()});
+            return tup.generatedID;
+        });
+        return new GameData(id, game.getWhiteUsername(), game.getBlackUsername(), game.getGameName(), target);
     }
 
 
     @Override
     public GameData getGame(AuthData tok, int id) throws DataAccessException {
         tok = checkTokInDB(tok);
-        var action = changeSQLActionINfo("select * from %DB_NAME%.games where id=?;");
-        var results = dbExecute(action, gameDataAdapter, id);
-        if (results.isEmpty()) throw new DataAccessException("no game found");
-        return results.getFirst();
+        var result = loadGame(id);
+        if (result == null) throw new DataAccessException("no game found");
+        return result;
+    }
+
+
+    @Override
+    public List<PositionMatch> findGamesWithPosition(AuthData tok, long positionKey, int afterGameId, int limit) throws DataAccessException {
+        tok = checkTokInDB(tok);
+        if (limit < 1) throw new DataAccessException("bad request");
+
+        // pages go by game id, so each one picks up in the index where the last left off
+        var action = changeSQLActionINfo("select g.id, g.whitePlayer, g.blackPlayer, g.name, p.ply from "
+                + "(select gameId, min(ply) as ply from %DB_NAME%.positions where hash=? and gameId > ? "
+                + "group by gameId order by gameId limit ?) p join %DB_NAME%.games g on g.id = p.gameId order by g.id;");
+        Adapter<PositionMatch> matchAdapter = rs -> new PositionMatch(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getInt(5));
+        return dbExecute(action, matchAdapter, positionKey, afterGameId, limit);
     }
 
 
@@ -42,6 +42,8 @@ public class Server {
         Spark.get("/game", this::listGames);
         // join a game
         Spark.put("/game", this::joinGame);
+        // find games that reached a position
+        Spark.get("/game/position", this::findPosition);
 
         // register a new user
         Spark.post("/user", this::registerUser);
@@ -136,6 +138,33 @@ public class Server {
     }
 
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private Object findPosition(Request req, Response res) {
+        String authToken = getTokFromHeaders(req);
+        AuthData tok = new AuthData("", authToken);
+        try {
+            int after = req.queryParams("after") == null ? 0 : Integer.parseInt(req.queryParams("after"));
+            int limit = req.queryParams("limit") == null ? DEFAULT_PAGE_SIZE
+                    : Math.min(Integer.parseInt(req.queryParams("limit")), MAX_PAGE_SIZE);
+            var games = gameService.findGamesWithPosition(tok, req.queryParams("fen"), after, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("games", games);
+            // the last game's id fetches the next page; a short page is the last one
+            if (games.size() == limit) {
+                response.put("next", games.getLast().gameID());
+            }
+            res.status(200);
+            return getObjFromJSon(response);
+        } catch (NumberFormatException err) {
+            return dbErrors(new DataAccessException("bad request"), res);
+        } catch (DataAccessException err) {
+            return dbErrors(err, res);
+        }
+    }
+
+
     private Object registerUser(Request req, Response res) {
         var user = new Gson().fromJson(req.body(), UserData.class);
         AuthData tok;
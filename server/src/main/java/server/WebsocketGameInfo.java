@@ -122,15 +122,27 @@ public class WebsocketGameInfo {
         broadcast(game.getGameId(), moveMade, authToken.getAuthToken());
 
         var g=game.getGame();
-
-        if (g.isInStalemate(g.getTeamTurn())) {
-            broadcast(game.getGameId(), new NotificationMessage("The game is a stalemate!"));
-            finishedGames.add(game.getGameId());
-        } else if (g.isInCheckmate(g.getTeamTurn())) {
-            broadcast(game.getGameId(), new NotificationMessage(STR."\{g.getTeamTurn() == ChessGame.TeamColor.BLACK ? game.getBlackUsername() : game.getWhiteUsername()} has been checkmated!"));
-            finishedGames.add(game.getGameId());
-        } else if (g.isInCheck(g.getTeamTurn()))
-            broadcast(game.getGameId(), new NotificationMessage(STR."\{g.getTeamTurn() == ChessGame.TeamColor.BLACK ? game.getBlackUsername() : game.getWhiteUsername()} is in check!"));
+        var player=g.getTeamTurn() == ChessGame.TeamColor.BLACK ? game.getBlackUsername() : game.getWhiteUsername();
+
+        switch (g.getStatus(g.getTeamTurn())) {
+            case STALEMATE -> {
+                broadcast(game.getGameId(), new NotificationMessage("The game is a stalemate!"));
+                finishedGames.add(game.getGameId());
+            }
+            case CHECKMATE -> {
+                broadcast(game.getGameId(), new NotificationMessage(STR."\{player} has been checkmated!"));
+                finishedGames.add(game.getGameId());
+            }
+            case REPETITION -> {
+                broadcast(game.getGameId(), new NotificationMessage("The game is a draw by threefold repetition!"));
+                finishedGames.add(game.getGameId());
+            }
+            case FIFTY_MOVES -> {
+                broadcast(game.getGameId(), new NotificationMessage("The game is a draw by the fifty-move rule!"));
+                finishedGames.add(game.getGameId());
+            }
+            case CHECK -> broadcast(game.getGameId(), new NotificationMessage(STR."\{player} is in check!"));
+        }
     }
 
     public void leave(Session session, AuthData authToken, LeaveMessage message) {
@@ -1,10 +1,12 @@
 package service;
 
+import chess.ChessGame;
 import dataAccess.DataAccessException;
 import dataAccess.GameDAO;
 import dataAccess.SQLDAO;
 import model.AuthData;
 import model.GameData;
+import model.PositionMatch;
 
 import java.util.List;
 
@@ -39,4 +41,22 @@ public class GameService {
         dao.updateGame(tok, gameToUpdate);
      }
 
+    /**
+     * Finds stored games that reached a position, a page at a time
+     *
+     * @param fen         the position, matched with the side to move
+     * @param afterGameId id of the last game on the previous page, 0 for the first page
+     * @param limit       most games to return
+     */
+    public List<PositionMatch> findGamesWithPosition(AuthData tok, String fen, int afterGameId, int limit) throws DataAccessException {
+        if (fen == null) throw new DataAccessException("bad request");
+        long key;
+        try {
+            key = ChessGame.fromFen(fen).getZobristKey();
+        } catch (IllegalArgumentException e) {
+            throw new DataAccessException("bad request: " + e.getMessage());
+        }
+        return dao.findGamesWithPosition(tok, key, afterGameId, limit);
+    }
+
 }
@@ -1,12 +1,17 @@
 package dataAccessTests;
 
+import chess.*;
 import dataAccess.*;
 import model.AuthData;
 import model.GameData;
+import model.PositionMatch;
 import model.UserData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class DAOTests {
@@ -238,4 +243,123 @@ class DAOTests {
 
         assertDoesNotThrow(() -> dao.joinGame(authToken, new GameData(game.getGameId(), null, user.getUsername(), game.getGameName(), null)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateGameAppendsMoves() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+
+        for (var move : new ChessMove[]{
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null),
+                new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null),
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null)}) {
+            var stored=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+            stored.getGame().makeMove(move);
+            assertDoesNotThrow(() -> dao.updateGame(authToken, stored));
+        }
+
+        var loaded=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R b - - 1 2", loaded.getGame().toFen());
+    }
+
+    @Test
+    void loadingReplaysPastSnapshotsAndKeepsRepetitions() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+
+        // knights out and back, long enough to pass several snapshots
+        var moves=new ChessMove[]{
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+                new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+                new ChessMove(new ChessPosition(3, 6), new ChessPosition(1, 7), null),
+                new ChessMove(new ChessPosition(6, 6), new ChessPosition(8, 7), null)};
+        for (int ply=0; ply < 2 * SQLDAO.SNAPSHOT_INTERVAL + 4; ply++) {
+            var move=moves[ply % moves.length];
+            var stored=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+            assertEquals(ply, stored.getGame().getPlyCount());
+            stored.getGame().makeMove(move);
+            assertDoesNotThrow(() -> dao.updateGame(authToken, stored));
+        }
+
+        var loaded=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        assertEquals(new ChessGame().getBoard(), loaded.getGame().getBoard());
+        assertTrue(loaded.getGame().isThreefoldRepetition());
+        assertEquals(ChessGame.GameStatus.REPETITION, loaded.getGame().getStatus(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void updateGameRejectsAStaleGame() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+
+        var first=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        var second=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        first.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        second.getGame().makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        assertDoesNotThrow(() -> dao.updateGame(authToken, first));
+        second.getGame().makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+
+        assertThrows(DataAccessException.class, () -> dao.updateGame(authToken, second));
+    }
+
+    @Test
+    void updateGameRejectsTheSecondOfTwoMovesFromTheSamePly() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+
+        var first=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        var second=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        first.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        second.getGame().makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        assertDoesNotThrow(() -> dao.updateGame(authToken, first));
+
+        var err=assertThrows(DataAccessException.class, () -> dao.updateGame(authToken, second));
+        assertEquals("game is out of date", err.getMessage());
+        var loaded=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        assertEquals(first.getGame().toFen(), loaded.getGame().toFen());
+    }
+
+    @Test
+    void updateGameKeepsSavingTheSameCopy() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+
+        var stored=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        stored.getGame().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertDoesNotThrow(() -> dao.updateGame(authToken, stored));
+        stored.getGame().makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        assertDoesNotThrow(() -> dao.updateGame(authToken, stored));
+
+        var loaded=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+        assertEquals(stored.getGame().toFen(), loaded.getGame().toFen());
+    }
+
+    @Test
+    void findGamesWithPositionPagesThroughGames() throws InvalidMoveException {
+        var authToken=assertDoesNotThrow(() -> dao.insertUser(user));
+        var e4=new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var d4=new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null);
+        var ids=new ArrayList<Integer>();
+        for (var first : new ChessMove[]{e4, d4, e4, e4}) {
+            var game=assertDoesNotThrow(() -> dao.createGame(authToken, new GameData("gameName")));
+            var stored=assertDoesNotThrow(() -> dao.getGame(authToken, game.getGameId()));
+            stored.getGame().makeMove(first);
+            assertDoesNotThrow(() -> dao.updateGame(authToken, stored));
+            if (first == e4) ids.add(game.getGameId());
+        }
+
+        var afterE4=new ChessGame();
+        afterE4.makeMove(e4);
+        var page=assertDoesNotThrow(() -> dao.findGamesWithPosition(authToken, afterE4.getZobristKey(), 0, 2));
+        assertEquals(List.of(ids.get(0), ids.get(1)), page.stream().map(PositionMatch::gameID).toList());
+        assertEquals(1, page.getFirst().ply());
+
+        var rest=assertDoesNotThrow(() -> dao.findGamesWithPosition(authToken, afterE4.getZobristKey(), page.getLast().gameID(), 2));
+        assertEquals(List.of(ids.get(2)), rest.stream().map(PositionMatch::gameID).toList());
+
+        // every game starts from the same position
+        var start=assertDoesNotThrow(() -> dao.findGamesWithPosition(authToken, new ChessGame().getZobristKey(), 0, 10));
+        assertEquals(4, start.size());
+        assertEquals(0, start.getFirst().ply());
+    }
+}
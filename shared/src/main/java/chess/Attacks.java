@@ -0,0 +1,190 @@
+package chess;
+
+/**
+ * Precomputed attack tables.
+ * <p>
+ * Knight, king and pawn attacks only depend on the square, so they are plain lookups.
+ * Rook and bishop attacks also depend on which squares are occupied; those use magic
+ * bitboards: the relevant occupancy of a square is multiplied by that square's magic
+ * number and the top bits of the product index a table holding the attack set for that
+ * occupancy. The magic numbers below came from a seeded random search; filling the tables
+ * checks them for collisions again.
+ */
+final class Attacks {
+    static final long[] KNIGHT = new long[Bitboards.NUM_SQUARES];
+    static final long[] KING = new long[Bitboards.NUM_SQUARES];
+    // squares a pawn of each color (TeamColor ordinal) captures on
+    static final long[][] PAWN = new long[2][Bitboards.NUM_SQUARES];
+    // squares strictly between two squares on a shared row, column or diagonal (0 when not aligned)
+    static final long[][] BETWEEN = new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+    // every square of the row, column or diagonal through two aligned squares (0 when not aligned)
+    static final long[][] LINE = new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_JUMPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {-1, 2}, {1, -2}, {-1, -2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, -1}, {0, 1}, {1, -1}, {1, 1}, {-1, -1}, {-1, 1}};
+
+    private static final long[] ROOK_MAGICS = {
+            0x0880004000801022L, 0x4440200440021000L, 0x088008D002200080L, 0x2500209000090004L,
+            0x1080040068008022L, 0x2200010842004410L, 0x1500008409000200L, 0x020000804029040AL,
+            0x4800800040008020L, 0x2082002200410082L, 0x0301001041082000L, 0xC041808008003000L,
+            0x00A4800400800800L, 0x0010800200800400L, 0x0184800100020080L, 0x0040800040802100L,
+            0x4000848004400060L, 0x8684444010002000L, 0x2006820010204200L, 0x0000090021001000L,
+            0x2009010008001004L, 0x900C008004020080L, 0x4108040001100288L, 0x5020220000804114L,
+            0x0080034240002000L, 0x03D0104040002000L, 0x4000100480200480L, 0x0040401200200A00L,
+            0x1032000600102008L, 0x0B820002801C0080L, 0x080A004200011488L, 0x0002908200140041L,
+            0x0080002000400040L, 0x10E0804000802003L, 0x0220100080802000L, 0x2204805004800801L,
+            0xC805004413000800L, 0x0050020080800400L, 0x0010800100800200L, 0x0004008502000864L,
+            0x0002008100420020L, 0x000150002008C000L, 0x090C410020090010L, 0x88422200400A0011L,
+            0x0008002040040400L, 0x0002001004020008L, 0x00008D2842040010L, 0x4204410080420004L,
+            0x0040800821004100L, 0x0200842000400480L, 0x0020620140B68200L, 0x80100008E1510100L,
+            0x0080800801040180L, 0x0803000804000300L, 0x0000080162300400L, 0x4002108041040200L,
+            0x8200102040800101L, 0x4602400016210481L, 0x08000A0040102082L, 0x0410210108100005L,
+            0x1011001008000423L, 0x11B1000400020801L, 0x0000012200881004L, 0x000008204401008AL
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x08040104010A0A00L, 0x20080800C4004040L, 0x211008B0A1010804L, 0x0108061840900088L,
+            0x0210882000442020L, 0x3009045241040400L, 0xC010A80802100046L, 0x02018A0802010400L,
+            0x080010111001204AL, 0x0080041024005080L, 0x8140418103010080L, 0x0040640428800614L,
+            0x0000411041302012L, 0x0022008820880490L, 0x402000450C10C080L, 0x1454020704925000L,
+            0x4044000988080800L, 0x02A0000404041044L, 0x05020030102A0320L, 0x020420180A0060A8L,
+            0x8882004C02110000L, 0x0083000200514404L, 0x002C040209046208L, 0x2285180044008409L,
+            0x2002081020481020L, 0x1004020004884820L, 0x02180A000C4A0600L, 0x0480802008020020L,
+            0x0481020004008400L, 0x0470030001806104L, 0x4304084404210408L, 0x0002890040844802L,
+            0x2201200800105020L, 0x8803A49001201200L, 0x0400222408480800L, 0x0004208020080200L,
+            0x0008020010040900L, 0x1002004100021008L, 0x0002108A00010800L, 0x3050810100A04410L,
+            0x0024100808230400L, 0x10010410AA004420L, 0x01000C0048002401L, 0x0081011414041800L,
+            0x0400812012000100L, 0x0040182804204840L, 0x0144100220420A00L, 0x0410020216204040L,
+            0x8006010420050020L, 0x48120280D8082001L, 0x8000428048280000L, 0x1000230042020081L,
+            0x8244A21002120340L, 0x0100081001820880L, 0x0421044102340000L, 0x0004114802008404L,
+            0x2080842110022010L, 0x0020007309082000L, 0x1010200052080400L, 0x4201009200460800L,
+            0x00084040E014A401L, 0x2101004011240121L, 0x0520404204840080L, 0x0A4C907009012380L
+    };
+
+    private static final Magic[] ROOK = new Magic[Bitboards.NUM_SQUARES];
+    private static final Magic[] BISHOP = new Magic[Bitboards.NUM_SQUARES];
+
+    private record Magic(long mask, long magic, int shift, long[] table) {
+        long attacks(long occupied) {
+            return table[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+
+    static {
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            KNIGHT[square] = stepAttacks(square, KNIGHT_JUMPS);
+            KING[square] = stepAttacks(square, KING_STEPS);
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][square] = stepAttacks(square, new int[][]{{1, -1}, {1, 1}});
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][square] = stepAttacks(square, new int[][]{{-1, -1}, {-1, 1}});
+            ROOK[square] = buildMagic(square, ROOK_MAGICS[square], ROOK_DIRECTIONS);
+            BISHOP[square] = buildMagic(square, BISHOP_MAGICS[square], BISHOP_DIRECTIONS);
+        }
+        for (int a = 0; a < Bitboards.NUM_SQUARES; a++) {
+            for (int b = 0; b < Bitboards.NUM_SQUARES; b++) {
+                fillLines(a, b);
+            }
+        }
+    }
+
+    private Attacks() {}
+
+    static long rook(int square, long occupied) {
+        return ROOK[square].attacks(occupied);
+    }
+
+    static long bishop(int square, long occupied) {
+        return BISHOP[square].attacks(occupied);
+    }
+
+    static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    // ----------------------------------------------------------TABLE SETUP -----------------------------------------
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long attacks = 0L;
+        int row = Bitboards.row(square);
+        int col = Bitboards.column(square);
+        for (int[] step : steps) {
+            if (Bitboards.onBoard(row + step[0], col + step[1])) {
+                attacks |= Bitboards.bit(Bitboards.square(row + step[0], col + step[1]));
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Walks each ray from a square until it leaves the board or hits an occupied square
+     * (which is included, since it may be a capture)
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int row = Bitboards.row(square) + direction[0];
+            int col = Bitboards.column(square) + direction[1];
+            while (Bitboards.onBoard(row, col)) {
+                long bit = Bitboards.bit(Bitboards.square(row, col));
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * The squares whose occupancy can change a slider's attacks: every ray square except
+     * the last one before the edge, since a piece there cannot block anything further out.
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] direction : directions) {
+            int row = Bitboards.row(square) + direction[0];
+            int col = Bitboards.column(square) + direction[1];
+            while (Bitboards.onBoard(row + direction[0], col + direction[1])) {
+                mask |= Bitboards.bit(Bitboards.square(row, col));
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void fillLines(int a, int b) {
+        long bitA = Bitboards.bit(a);
+        long bitB = Bitboards.bit(b);
+        for (int[][] directions : new int[][][]{ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+            if (a != b && (slidingAttacks(a, 0L, directions) & bitB) != 0) {
+                BETWEEN[a][b] = slidingAttacks(a, bitB, directions) & slidingAttacks(b, bitA, directions);
+                LINE[a][b] = (slidingAttacks(a, 0L, directions) & slidingAttacks(b, 0L, directions)) | bitA | bitB;
+            }
+        }
+    }
+
+    private static Magic buildMagic(int square, long magic, int[][] directions) {
+        long mask = relevantMask(square, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        boolean[] filled = new boolean[table.length];
+
+        // walk every subset of the mask and store its attacks under the magic index
+        long subset = 0L;
+        do {
+            int index = (int) ((subset * magic) >>> (64 - bits));
+            long attacks = slidingAttacks(square, subset, directions);
+            if (filled[index] && table[index] != attacks) {
+                throw new IllegalStateException("Bad magic for square " + square);
+            }
+            filled[index] = true;
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        return new Magic(mask, magic, 64 - bits, table);
+    }
+}
@@ -0,0 +1,227 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Which positions of a king and one piece against a lone king the side with the piece wins.
+ * <p>
+ * A position is the two kings, the piece and the side to move, with the piece's side taken
+ * to be white (black's positions are looked up upside down). That makes 2 * 64 * 64 * 64
+ * positions, one bit each, set when the side with the piece wins with best play and clear
+ * when it can't, or the position can't arise. The table is 64 KB, and a file of it can be
+ * memory-mapped and used as it is.
+ * <p>
+ * Tables are generated by retrograde analysis with the game's own move generation, so they
+ * follow this game's rules (a king may not take a queen, for one). Every position's moves
+ * are generated once; checkmates are wins, stalemates and captures of the piece are draws.
+ * Then, over and over until nothing changes, a position where the stronger side is to move
+ * becomes a win if one of its moves reaches a win, and one where the lone king is to move
+ * becomes a win if all of its moves do. Whatever is left is a draw. Both the move
+ * generation and each pass are split across threads.
+ */
+public final class Bitbase {
+    /**
+     * The endings covered, by the piece the stronger side has
+     */
+    public enum Ending {
+        KQK(ChessPiece.PieceType.QUEEN),
+        KRK(ChessPiece.PieceType.ROOK),
+        KPK(ChessPiece.PieceType.PAWN);
+
+        final ChessPiece.PieceType piece;
+
+        Ending(ChessPiece.PieceType piece) {
+            this.piece = piece;
+        }
+    }
+
+    static final int POSITIONS = 2 * 64 * 64 * 64;
+    static final int BYTES = POSITIONS / 8;
+
+    // successor codes for moves that leave the table
+    private static final int WIN_CODE = -1;
+    private static final int DRAW_CODE = -2;
+    // generation states
+    private static final byte UNKNOWN = 0;
+    private static final byte WIN = 1;
+    private static final byte DRAW = 2;
+
+    private final Ending ending;
+    private final ByteBuffer bits;
+
+    private Bitbase(Ending ending, ByteBuffer bits) {
+        this.ending = ending;
+        this.bits = bits;
+    }
+
+    public Ending getEnding() {
+        return ending;
+    }
+
+    /**
+     * @param weakToMove  True if the lone king is to move
+     * @param strongKing  square of the stronger side's king, from its own side of the board
+     * @param weakKing    square of the lone king, likewise
+     * @param pieceSquare square of the piece, likewise
+     * @return True if the side with the piece wins
+     */
+    boolean wins(boolean weakToMove, int strongKing, int weakKing, int pieceSquare) {
+        return wins(index(weakToMove, strongKing, weakKing, pieceSquare));
+    }
+
+    private boolean wins(int index) {
+        return (bits.get(index >>> 3) >>> (index & 7) & 1) != 0;
+    }
+
+    private static int index(boolean weakToMove, int strongKing, int weakKing, int pieceSquare) {
+        return (weakToMove ? 1 << 18 : 0) | strongKing << 12 | weakKing << 6 | pieceSquare;
+    }
+
+    /**
+     * Maps a table file into memory
+     *
+     * @throws IOException if the file can't be read or is the wrong size
+     */
+    public static Bitbase open(Ending ending, Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != BYTES) {
+                throw new IOException("Not a bitbase, expected " + BYTES + " bytes: " + path);
+            }
+            return new Bitbase(ending, channel.map(FileChannel.MapMode.READ_ONLY, 0, BYTES));
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        var bytes = new byte[BYTES];
+        bits.get(0, bytes);
+        Files.write(path, bytes);
+    }
+
+    /**
+     * Generates the table of an ending
+     *
+     * @param promotions tables to look up when a pawn promotes; needed for {@link Ending#KPK} only
+     */
+    static Bitbase generate(Ending ending, Bitbases promotions) {
+        var state = new byte[POSITIONS];
+        var successors = new int[POSITIONS][];
+        IntStream.range(0, Bitboards.NUM_SQUARES).parallel()
+                .forEach(strongKing -> expand(ending, promotions, strongKing, state, successors));
+
+        // every pass reads what earlier passes decided, so the wins spread back from the mates;
+        // a pass that decides nothing new means nothing ever will
+        while (IntStream.range(0, POSITIONS).parallel().map(index -> settle(index, state, successors)).sum() > 0) {
+            // keep going
+        }
+
+        var bytes = new byte[BYTES];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (state[index] == WIN) {
+                bytes[index >>> 3] |= (byte) (1 << (index & 7));
+            }
+        }
+        return new Bitbase(ending, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Sets up every position with the stronger king on the given square, marks the ones that
+     * are decided already and lists the moves of the rest
+     */
+    private static void expand(Ending ending, Bitbases promotions, int strongKing, byte[] state, int[][] successors) {
+        var white = ChessGame.TeamColor.WHITE;
+        var black = ChessGame.TeamColor.BLACK;
+        var board = new ChessBoard();
+        var moves = new MoveList();
+        for (int weakKing = 0; weakKing < Bitboards.NUM_SQUARES; weakKing++) {
+            for (int piece = 0; piece < Bitboards.NUM_SQUARES; piece++) {
+                if (weakKing == strongKing || piece == strongKing || piece == weakKing
+                        || (Attacks.KING[strongKing] & Bitboards.bit(weakKing)) != 0
+                        || (ending.piece == ChessPiece.PieceType.PAWN && (piece < 8 || piece >= 56))) {
+                    state[index(false, strongKing, weakKing, piece)] = DRAW;
+                    state[index(true, strongKing, weakKing, piece)] = DRAW;
+                    continue;
+                }
+                board.addPiece(ChessPosition.of(strongKing), ChessPiece.of(white, ChessPiece.PieceType.KING));
+                board.addPiece(ChessPosition.of(weakKing), ChessPiece.of(black, ChessPiece.PieceType.KING));
+                board.addPiece(ChessPosition.of(piece), ChessPiece.of(white, ending.piece));
+                for (var turn : new ChessGame.TeamColor[]{white, black}) {
+                    int index = index(turn == black, strongKing, weakKing, piece);
+                    board.setTeamTurn(turn);
+                    // the side that just moved can't have left its king in check
+                    if (board.isInCheck(turn == white ? black : white)) {
+                        state[index] = DRAW;
+                        continue;
+                    }
+                    moves.clear();
+                    MoveGenerator.legalMoves(board, turn, ~0L, moves);
+                    if (moves.isEmpty()) {
+                        state[index] = turn == black && board.isInCheck(black) ? WIN : DRAW;
+                        continue;
+                    }
+                    var next = new int[moves.size()];
+                    for (int i = 0; i < moves.size(); i++) {
+                        board.makeMove(moves.get(i));
+                        next[i] = successor(ending, promotions, board);
+                        board.unmakeMove();
+                    }
+                    successors[index] = next;
+                }
+                board.removePiece(ChessPosition.of(strongKing));
+                board.removePiece(ChessPosition.of(weakKing));
+                board.removePiece(ChessPosition.of(piece));
+            }
+        }
+    }
+
+    /**
+     * @return the index of the position on the board, or a code if it has left the table
+     */
+    private static int successor(Ending ending, Bitbases promotions, ChessBoard board) {
+        var white = ChessGame.TeamColor.WHITE;
+        int strongKing = board.kingSquare(white);
+        int weakKing = board.kingSquare(ChessGame.TeamColor.BLACK);
+        boolean weakToMove = board.getTeamTurn() == ChessGame.TeamColor.BLACK;
+        long piece = board.pieces(white, ending.piece);
+        if (piece != 0) {
+            return index(weakToMove, strongKing, weakKing, Long.numberOfTrailingZeros(piece));
+        }
+        for (var promoted : new Ending[]{Ending.KQK, Ending.KRK}) {
+            long pieces = board.pieces(white, promoted.piece);
+            if (pieces != 0 && promotions != null) {
+                return promotions.get(promoted).wins(weakToMove, strongKing, weakKing,
+                        Long.numberOfTrailingZeros(pieces)) ? WIN_CODE : DRAW_CODE;
+            }
+        }
+        // the piece was taken, or became a bishop or knight, which can't mate
+        return DRAW_CODE;
+    }
+
+    /**
+     * @return 1 if the position was found to be a win in this pass, otherwise 0
+     */
+    private static int settle(int index, byte[] state, int[][] successors) {
+        if (state[index] != UNKNOWN) {
+            return 0;
+        }
+        boolean weakToMove = index >= 1 << 18;
+        boolean win = weakToMove;
+        for (int next : successors[index]) {
+            boolean wins = next == WIN_CODE || (next >= 0 && state[next] == WIN);
+            if (weakToMove ? !wins : wins) {
+                win = !weakToMove;
+                break;
+            }
+        }
+        if (win) {
+            state[index] = WIN;
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,118 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@link Bitbase} of every ending covered, and exact results for positions in them.
+ * <p>
+ * Tables are either generated, which takes a few seconds, or mapped from files written
+ * earlier into a directory, one {@code kqk.bin}, {@code krk.bin} and {@code kpk.bin} each.
+ */
+public final class Bitbases {
+    /**
+     * The result of a position with best play, for the side to move
+     */
+    public enum Outcome {
+        WIN,
+        DRAW,
+        LOSS
+    }
+
+    private final Map<Bitbase.Ending, Bitbase> tables;
+
+    private Bitbases(Map<Bitbase.Ending, Bitbase> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Generates every table; pawn endings need the tables of the pieces pawns promote to,
+     * so those come first
+     */
+    public static Bitbases generate() {
+        var tables = new EnumMap<Bitbase.Ending, Bitbase>(Bitbase.Ending.class);
+        var bitbases = new Bitbases(tables);
+        tables.put(Bitbase.Ending.KQK, Bitbase.generate(Bitbase.Ending.KQK, null));
+        tables.put(Bitbase.Ending.KRK, Bitbase.generate(Bitbase.Ending.KRK, null));
+        tables.put(Bitbase.Ending.KPK, Bitbase.generate(Bitbase.Ending.KPK, bitbases));
+        return bitbases;
+    }
+
+    /**
+     * Maps the table files in a directory
+     */
+    public static Bitbases open(Path directory) throws IOException {
+        var tables = new EnumMap<Bitbase.Ending, Bitbase>(Bitbase.Ending.class);
+        for (var ending : Bitbase.Ending.values()) {
+            tables.put(ending, Bitbase.open(ending, directory.resolve(fileName(ending))));
+        }
+        return new Bitbases(tables);
+    }
+
+    /**
+     * Writes every table into a directory, to be mapped later with {@link #open}
+     */
+    public void write(Path directory) throws IOException {
+        for (var table : tables.values()) {
+            table.write(directory.resolve(fileName(table.getEnding())));
+        }
+    }
+
+    Bitbase get(Bitbase.Ending ending) {
+        return tables.get(ending);
+    }
+
+    /**
+     * @return the result for the side to move, or null if the position is not in a table
+     */
+    public Outcome probe(ChessGame game) {
+        return probe(game.getBoard());
+    }
+
+    /**
+     * @return the result for the side to move, or null if the position is not in a table
+     */
+    public Outcome probe(ChessBoard board) {
+        long occupied = board.occupied();
+        if (Long.bitCount(occupied) != 3) {
+            return null;
+        }
+        long kings = board.pieces(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)
+                | board.pieces(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
+        if (Long.bitCount(kings) != 2) {
+            return null;
+        }
+        int square = Long.numberOfTrailingZeros(occupied & ~kings);
+        int piece = board.pieceAt(square);
+        var strong = Bitboards.colorOf(piece);
+        var type = Bitboards.typeOf(piece);
+        for (var ending : Bitbase.Ending.values()) {
+            if (ending.piece == type && tables.containsKey(ending)) {
+                // tables are from white's side; black's positions are looked up upside down
+                int flip = strong == ChessGame.TeamColor.WHITE ? 0 : 56;
+                boolean weakToMove = board.getTeamTurn() != strong;
+                boolean wins = tables.get(ending).wins(weakToMove, board.kingSquare(strong) ^ flip,
+                        board.kingSquare(Bitboards.opponent(strong)) ^ flip, square ^ flip);
+                return !wins ? Outcome.DRAW : weakToMove ? Outcome.LOSS : Outcome.WIN;
+            }
+        }
+        return null;
+    }
+
+    private static String fileName(Bitbase.Ending ending) {
+        return ending.name().toLowerCase(Locale.ROOT) + ".bin";
+    }
+
+    /**
+     * Generates the tables and writes them into the directory given (default: the current one)
+     */
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        var bitbases = generate();
+        bitbases.write(Path.of(args.length > 0 ? args[0] : "."));
+        System.out.printf("Generated %d tables in %.1f s%n", bitbases.tables.size(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,75 @@
+package chess;
+
+/**
+ * Square and bitboard helpers used by the board representation.
+ * <p>
+ * Squares are numbered 0-63 starting at row 1, column 1 and running across each row,
+ * so square {@code s} is bit {@code 1L << s} of a bitboard. Colored pieces are numbered
+ * 0-11 as {@code color * 6 + type}, following the declaration order of
+ * {@link ChessGame.TeamColor} and {@link ChessPiece.PieceType}.
+ */
+final class Bitboards {
+    static final int NUM_SQUARES = 64;
+    static final int NUM_PIECES = 12;
+    static final int NO_PIECE = -1;
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_8 = RANK_1 << 56;
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Bitboards() {}
+
+    static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    static boolean onBoard(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    /**
+     * @return the 1-based row of a square
+     */
+    static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    /**
+     * @return the 1-based column of a square
+     */
+    static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    static int pieceIndex(ChessPiece piece) {
+        return pieceIndex(piece.getTeamColor(), piece.getPieceType());
+    }
+
+    static ChessGame.TeamColor colorOf(int piece) {
+        return COLORS[piece / 6];
+    }
+
+    static ChessPiece.PieceType typeOf(int piece) {
+        return TYPES[piece % 6];
+    }
+
+    static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
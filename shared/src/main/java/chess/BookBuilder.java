@@ -0,0 +1,399 @@
+package chess;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a {@link PolyglotBook} from finished games in PGN files.
+ * <p>
+ * The games are read one at a time on the calling thread and handed out in batches to
+ * worker threads, which replay them with {@link ChessGame#makeMove} and tally, for every
+ * position in the first {@code maxPly} plies, how often each move was played there and how it
+ * scored for the side that played it: two points for a win, one for a draw. Each worker keeps
+ * its own open-addressing table of primitive arrays, so nothing is shared or boxed while the
+ * games are replayed; at the end the tables are merged, sorted by key and written out.
+ * <p>
+ * A move's weight in the book is its points, scaled down if needed to fit in 16 bits, and
+ * the entry's learning field holds the number of games it was played in. Games are replayed
+ * until the first move that can't be played under this game's rules (castling, en passant),
+ * so they still count up to that point. Games whose SetUp and FEN tags start them from another
+ * position are replayed from there, and counted as cut short if the FEN can't be read.
+ */
+public final class BookBuilder {
+    // games handed to a worker at a time, and batches allowed to wait per worker
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_BATCHES = 4;
+    // how long to wait on a full queue before checking that the workers are still running
+    private static final long HAND_OUT_WAIT_MILLIS = 100;
+    private static final List<PgnReader.Game> END = List.of();
+
+    /**
+     * @param games     games read
+     * @param truncated games that stopped early on a move that could not be played
+     * @param positions distinct positions in the book
+     * @param entries   entries written, one per position and move
+     */
+    public record Stats(long games, long truncated, long positions, long entries) {}
+
+    private final int maxPly;
+    private final int minGames;
+    private final int threads;
+
+    /**
+     * @param maxPly   plies from the start of each game to take moves from
+     * @param minGames how many games a move has to be played in to make the book
+     * @param threads  number of threads replaying games
+     */
+    public BookBuilder(int maxPly, int minGames, int threads) {
+        if (maxPly < 1 || minGames < 1 || threads < 1) {
+            throw new IllegalArgumentException("Plies, minimum games and threads must be positive");
+        }
+        this.maxPly = maxPly;
+        this.minGames = minGames;
+        this.threads = threads;
+    }
+
+    /**
+     * Replays every game in the files and writes the book
+     */
+    public Stats build(List<Path> pgnFiles, Path output) throws IOException {
+        var readers = new ArrayList<Reader>();
+        try {
+            for (var file : pgnFiles) {
+                // PGN is ASCII in practice; Latin-1 never fails on stray bytes in player names
+                readers.add(Files.newBufferedReader(file, StandardCharsets.ISO_8859_1));
+            }
+            return replayAll(readers, output);
+        } finally {
+            for (var reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private Stats replayAll(List<? extends Reader> inputs, Path output) throws IOException {
+        BlockingQueue<List<PgnReader.Game>> queue = new ArrayBlockingQueue<>(threads * QUEUE_BATCHES);
+        var pool = Executors.newFixedThreadPool(threads);
+        var workers = new ArrayList<Future<Tally>>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(() -> replay(queue)));
+        }
+
+        long games = 0;
+        Tally tally;
+        try {
+            var batch = new ArrayList<PgnReader.Game>(BATCH_SIZE);
+            for (var input : inputs) {
+                var reader = new PgnReader(input instanceof BufferedReader ? input : new BufferedReader(input));
+                for (var game = reader.next(); game != null; game = reader.next()) {
+                    batch.add(game);
+                    games++;
+                    if (batch.size() == BATCH_SIZE) {
+                        handOut(queue, batch, workers);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                handOut(queue, batch, workers);
+            }
+            for (int i = 0; i < threads; i++) {
+                handOut(queue, END, workers);
+            }
+
+            tally = workers.getFirst().get();
+            for (var worker : workers.subList(1, workers.size())) {
+                tally.addAll(worker.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the book", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("Failed to replay games", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long[] written = write(tally, output);
+        return new Stats(games, tally.truncated, written[0], written[1]);
+    }
+
+    /**
+     * Queues a batch for the workers, waiting while the queue is full. A worker only stops
+     * early by throwing, and then nothing may ever take from the queue again, so the wait
+     * keeps checking the workers and rethrows the first failure it finds.
+     *
+     * @throws ExecutionException with the exception a worker died of
+     */
+    private static void handOut(BlockingQueue<List<PgnReader.Game>> queue, List<PgnReader.Game> batch,
+                                List<Future<Tally>> workers) throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, HAND_OUT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (var worker : workers) {
+                if (worker.isDone()) {
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    private Tally replay(BlockingQueue<List<PgnReader.Game>> queue) throws InterruptedException {
+        var tally = new Tally();
+        for (var batch = queue.take(); batch != END; batch = queue.take()) {
+            for (var game : batch) {
+                replay(game, tally);
+            }
+        }
+        return tally;
+    }
+
+    private void replay(PgnReader.Game record, Tally tally) {
+        // points for white; black's are two minus these
+        int whitePoints = switch (record.result()) {
+            case "1-0" -> 2;
+            case "0-1" -> 0;
+            case "1/2-1/2" -> 1;
+            default -> -1;
+        };
+        if (whitePoints < 0) {
+            return; // unfinished games say nothing about the moves
+        }
+        ChessGame game;
+        try {
+            game = record.fen() == null ? new ChessGame() : ChessGame.fromFen(record.fen());
+        } catch (IllegalArgumentException e) {
+            tally.truncated++;
+            return; // set up from a position we can't read, so none of its moves can be placed
+        }
+        int plies = Math.min(maxPly, record.moves().size());
+        for (int ply = 0; ply < plies; ply++) {
+            try {
+                var move = San.parse(game, record.moves().get(ply));
+                long key = PolyglotBook.polyglotKey(game);
+                int points = game.getTeamTurn() == ChessGame.TeamColor.WHITE ? whitePoints : 2 - whitePoints;
+                game.makeMove(move);
+                tally.add(key, PolyglotBook.encodeMove(move), points);
+            } catch (InvalidMoveException e) {
+                tally.truncated++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sorts the tally and writes the moves played often enough
+     *
+     * @return the number of positions and entries written
+     */
+    private long[] write(Tally tally, Path output) throws IOException {
+        tally.compact();
+        tally.sort(0, tally.size - 1);
+        long maxPoints = 1;
+        for (int i = 0; i < tally.size; i++) {
+            if (tally.games[i] >= minGames) {
+                maxPoints = Math.max(maxPoints, tally.points[i]);
+            }
+        }
+        long positions = 0;
+        long entries = 0;
+        long lastKey = 0;
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))) {
+            for (int i = 0; i < tally.size; i++) {
+                if (tally.games[i] < minGames) {
+                    continue;
+                }
+                if (entries == 0 || tally.keys[i] != lastKey) {
+                    positions++;
+                    lastKey = tally.keys[i];
+                }
+                int weight = maxPoints <= 0xFFFF ? tally.points[i] : (int) (tally.points[i] * 0xFFFFL / maxPoints);
+                out.writeLong(tally.keys[i]);
+                out.writeShort(tally.moves[i]);
+                out.writeShort(weight);
+                out.writeInt(tally.games[i]);
+                entries++;
+            }
+        }
+        return new long[]{positions, entries};
+    }
+
+    /**
+     * Games and points per (position, move), in an open-addressing hash table of parallel
+     * arrays. A slot is empty while its games count is 0.
+     */
+    private static final class Tally {
+        private long[] keys = new long[1 << 12];
+        private int[] moves = new int[keys.length];
+        private int[] points = new int[keys.length];
+        private int[] games = new int[keys.length];
+        private int size;
+        private long truncated;
+
+        void add(long key, int move, int gamePoints) {
+            add(key, move, gamePoints, 1);
+        }
+
+        void addAll(Tally other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.games[i] != 0) {
+                    add(other.keys[i], other.moves[i], other.points[i], other.games[i]);
+                }
+            }
+            truncated += other.truncated;
+        }
+
+        private void add(long key, int move, int gamePoints, int gameCount) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(key, move, mask);
+            while (games[slot] != 0 && (keys[slot] != key || moves[slot] != move)) {
+                slot = (slot + 1) & mask;
+            }
+            if (games[slot] == 0) {
+                keys[slot] = key;
+                moves[slot] = move;
+                size++;
+            }
+            points[slot] += gamePoints;
+            games[slot] += gameCount;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMoves = moves;
+            int[] oldPoints = points;
+            int[] oldGames = games;
+            keys = new long[oldKeys.length * 2];
+            moves = new int[keys.length];
+            points = new int[keys.length];
+            games = new int[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldGames[i] != 0) {
+                    add(oldKeys[i], oldMoves[i], oldPoints[i], oldGames[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int move, int mask) {
+            long hash = (key ^ move) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+        /**
+         * Moves the entries to the front of the arrays; the table can't be added to after this
+         */
+        void compact() {
+            int next = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (games[i] != 0) {
+                    swap(next++, i);
+                }
+            }
+        }
+
+        /**
+         * Quicksorts the compacted entries by key as an unsigned number, then by move
+         */
+        void sort(int low, int high) {
+            while (low < high) {
+                if (high - low < 16) {
+                    for (int i = low + 1; i <= high; i++) {
+                        for (int j = i; j > low && compare(j - 1, j) > 0; j--) {
+                            swap(j - 1, j);
+                        }
+                    }
+                    return;
+                }
+                swap((low + high) >>> 1, high);
+                int store = low;
+                for (int i = low; i < high; i++) {
+                    if (compare(i, high) < 0) {
+                        swap(i, store++);
+                    }
+                }
+                swap(store, high);
+                // recurse into the smaller side so the stack stays shallow
+                if (store - low < high - store) {
+                    sort(low, store - 1);
+                    low = store + 1;
+                } else {
+                    sort(store + 1, high);
+                    high = store - 1;
+                }
+            }
+        }
+
+        private int compare(int a, int b) {
+            int byKey = Long.compareUnsigned(keys[a], keys[b]);
+            return byKey != 0 ? byKey : Integer.compare(moves[a], moves[b]);
+        }
+
+        private void swap(int a, int b) {
+            long key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            int move = moves[a];
+            moves[a] = moves[b];
+            moves[b] = move;
+            int point = points[a];
+            points[a] = points[b];
+            points[b] = point;
+            int count = games[a];
+            games[a] = games[b];
+            games[b] = count;
+        }
+    }
+
+    /**
+     * Builds a book: {@code BookBuilder <output.bin> <games.pgn>...}, with optional
+     * {@code -plies n} (default 24), {@code -min n} games per move (default 1) and
+     * {@code -threads n} (default: one per processor) before the file names.
+     */
+    public static void main(String[] args) throws IOException {
+        int plies = 24;
+        int min = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int arg = 0;
+        while (arg + 1 < args.length && args[arg].startsWith("-")) {
+            int value = Integer.parseInt(args[arg + 1]);
+            switch (args[arg]) {
+                case "-plies" -> plies = value;
+                case "-min" -> min = value;
+                case "-threads" -> threads = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[arg]);
+            }
+            arg += 2;
+        }
+        if (args.length - arg < 2) {
+            System.err.println("Usage: BookBuilder [-plies n] [-min n] [-threads n] <output.bin> <games.pgn>...");
+            return;
+        }
+        var inputs = new ArrayList<Path>();
+        for (int i = arg + 1; i < args.length; i++) {
+            inputs.add(Path.of(args[i]));
+        }
+        long start = System.nanoTime();
+        var stats = new BookBuilder(plies, min, threads).build(inputs, Path.of(args[arg]));
+        System.out.printf("%d games (%d cut short), %d positions, %d entries in %.1f s%n", stats.games(),
+                stats.truncated(), stats.positions(), stats.entries(), (System.nanoTime() - start) / 1e9);
+    }
+}
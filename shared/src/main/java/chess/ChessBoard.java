@@ -1,5 +1,15 @@
 package chess;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -11,44 +21,64 @@ import java.util.Map;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessBoard.Rebuilder.class)
 public class ChessBoard {
 
-
-    private final ChessPiece[][] squares = new ChessPiece[8][8];
+    // Only the mailbox and the side to move are written out by Gson; everything else is worked
+    // out from the mailbox again when a board is read back, see Rebuilder.
+
+    // one bitboard per colored piece, indexed by Bitboards.pieceIndex
+    private final transient long[] pieces = new long[Bitboards.NUM_PIECES];
+    // occupancy per TeamColor ordinal, plus both colors together
+    private final transient long[] colors = new long[2];
+    private transient long occupied;
+    // piece index + 1 for every square (0 when empty) so lookups don't have to probe 12 bitboards
+    private final byte[] mailbox = new byte[Bitboards.NUM_SQUARES];
+    private ChessGame.TeamColor teamTurn = ChessGame.TeamColor.WHITE;
+    // Zobrist key of the piece placement alone; the side to move is mixed in by getZobristKey
+    private transient long placementKey;
+    // Zobrist key of the pawns alone, for the pawn structure cache
+    private transient long pawnKey;
+    // material and piece-square totals (white minus black) and game phase, see Evaluation
+    private transient int midgameScore;
+    private transient int endgameScore;
+    private transient int phase;
+
+    // one packed record per move played with makeMove, popped by unmakeMove; grown when full
+    private transient int[] undoStack = new int[256];
+    private transient int undoCount;
 
     public ChessBoard() {}
 
     // Copy constructor
     public ChessBoard(ChessBoard other) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPiece originalPiece = other.squares[i][j];
-                if (originalPiece != null) {
-                    this.squares[i][j] = new ChessPiece(originalPiece.getTeamColor(), originalPiece.getPieceType());
-                } else {
-                    this.squares[i][j] = null;
-                }
-            }
-        }
+        System.arraycopy(other.pieces, 0, this.pieces, 0, this.pieces.length);
+        System.arraycopy(other.colors, 0, this.colors, 0, this.colors.length);
+        System.arraycopy(other.mailbox, 0, this.mailbox, 0, this.mailbox.length);
+        this.occupied = other.occupied;
+        this.placementKey = other.placementKey;
+        this.pawnKey = other.pawnKey;
+        this.midgameScore = other.midgameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+        this.teamTurn = other.teamTurn;
     }
 
     public String serialize(){
-        var builder = new StringBuilder();
-        for (int i = 0; i < 8; i++){
-            for (int j = 0; j < 8; j++){
-                var piece = squares[i][j];
-                builder.append(piece == null ? "." : piece);
-            }
+        var builder = new StringBuilder(Bitboards.NUM_SQUARES);
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            int piece = pieceAt(square);
+            builder.append(piece == Bitboards.NO_PIECE ? '.' : ChessPiece.PIECE_CHARS[piece]);
         }
         return builder.toString();
     }
 
     public static ChessBoard parseFromString(String gameString) {
         ChessBoard board = new ChessBoard();
-        for (int i = 0; i < 8; i++){
-            for (int j = 0; j < 8; j++){
-                var piece = ChessPiece.parseFromString(gameString.charAt(i * 8 + j));
-                board.addPiece(new ChessPosition(i + 1, j + 1), piece);
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            var piece = ChessPiece.parseFromString(gameString.charAt(square));
+            if (piece != null) {
+                board.putPiece(square, Bitboards.pieceIndex(piece));
             }
         }
         return board;
@@ -63,74 +93,173 @@ public class ChessBoard {
             return false;
         }
         ChessBoard other = (ChessBoard) obj;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                var p1 = this.squares[i][j];
-                var p2 = other.squares[i][j];
+        // different keys always mean different placements; equal keys are confirmed against the bitboards
+        return this.placementKey == other.placementKey
+                && this.occupied == other.occupied && Arrays.equals(this.pieces, other.pieces);
+    }
 
-                if (p1 == null && p2 == null) {
-                    continue;
-                }
+    @Override
+    public int hashCode() {
+        return Long.hashCode(placementKey);
+    }
 
-                // Check if either p1 or p2 is null, but not both
-                if (p1 == null || p2 == null) {
-                    return false;
-                }
+    /**
+     * Gets the 64-bit Zobrist key of this position: the piece placement plus the side to move.
+     * It is kept up to date as pieces move, so reading it is free. Equal positions always have
+     * equal keys; different positions almost never do.
+     * <p>
+     * {@link #equals} and {@link #hashCode} only look at the placement, not the side to move.
+     */
+    public long getZobristKey() {
+        return placementKey ^ Zobrist.side(teamTurn);
+    }
 
-                if (p1.getPieceType() != p2.getPieceType() || p1.getTeamColor() != p1.getTeamColor()) {
-                    return false;
-                }
-            }
-        }
-        return true;
+    long placementKey() {
+        return placementKey;
     }
 
-    @Override
-    public int hashCode() {
-        return Arrays.hashCode(squares);
+    long pawnKey() {
+        return pawnKey;
     }
 
     @Override
     public String toString() {
         return "ChessBoard{" +
-                "squares=" + Arrays.toString(squares) +
+                "squares=" + serialize() +
                 '}';
     }
 
     /**
-     * Adds a chess piece to the chessboard
+     * Adds a chess piece to the chessboard. Moves played with {@link #makeMove(ChessMove)}
+     * before this can no longer be taken back with {@link #unmakeMove()}, since their undo
+     * records still describe the old squares.
      *
      * @param position where to add the piece to
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        int square = Bitboards.square(position);
+        clearSquare(square);
+        if (piece != null) {
+            putPiece(square, Bitboards.pieceIndex(piece));
+        }
     }
 
+    /**
+     * Empties a square. Like {@link #addPiece}, this leaves earlier moves unfit to unmake.
+     */
     public void removePiece(ChessPosition position) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = null;
+        clearSquare(Bitboards.square(position));
     }
 
+    /**
+     * Moves whatever is on one square to another without recording it for {@link #unmakeMove()};
+     * like {@link #addPiece}, this leaves earlier moves unfit to unmake.
+     */
     public void movePiece(ChessPosition start, ChessPosition end) {
-        ChessPiece piece = getPiece(start);
-        this.removePiece(start);
-        this.addPiece(end, piece);
+        int from = Bitboards.square(start);
+        int to = Bitboards.square(end);
+        int piece = pieceAt(from);
+        clearSquare(from);
+        clearSquare(to);
+        if (piece != Bitboards.NO_PIECE) {
+            putPiece(to, piece);
+        }
+    }
+
+    /**
+     * Plays a move on the board and passes the turn to the other team. Captured pieces and
+     * promotions are recorded so {@link #unmakeMove()} can restore the previous position.
+     * The move is not checked for legality.
+     *
+     * @param move the move to play, starting on an occupied square
+     */
+    public void makeMove(ChessMove move) {
+        makeMove(move.pack());
+    }
+
+    /**
+     * Plays a packed move, see {@link #makeMove(ChessMove)}
+     *
+     * @param move the move, packed as described in {@link Move}
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int moved = pieceAt(from);
+        if (moved == Bitboards.NO_PIECE) {
+            throw new IllegalArgumentException("No piece to move for " + Move.toString(move));
+        }
+        int captured = pieceAt(to);
+
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        // from | to | moved piece | captured piece + 1 (0 for none)
+        undoStack[undoCount++] = from | to << 6 | moved << 12 | (captured + 1) << 16;
+
+        clearSquare(from);
+        clearSquare(to);
+        var promotion = Move.promotion(move);
+        putPiece(to, promotion == null ? moved : Bitboards.pieceIndex(Bitboards.colorOf(moved), promotion));
+        teamTurn = Bitboards.opponent(teamTurn);
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(ChessMove)}, restoring any
+     * captured piece, undoing promotion and handing the turn back. The squares the move
+     * touched must not have been changed since by {@link #addPiece}, {@link #removePiece}
+     * or {@link #movePiece}.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        int record = undoStack[--undoCount];
+        int from = record & 0x3F;
+        int to = (record >>> 6) & 0x3F;
+        int moved = (record >>> 12) & 0xF;
+        int captured = (record >>> 16) - 1;
+
+        clearSquare(to);
+        if (captured != Bitboards.NO_PIECE) {
+            putPiece(to, captured);
+        }
+        putPiece(from, moved);
+        teamTurn = Bitboards.opponent(teamTurn);
     }
+
+    /**
+     * @return which team moves next on this board
+     */
+    public ChessGame.TeamColor getTeamTurn() {
+        return teamTurn;
+    }
+
+    public void setTeamTurn(ChessGame.TeamColor team) {
+        this.teamTurn = team;
+    }
+
+    /**
+     * Builds an 8x8 grid view of the board, indexed [row - 1][column - 1].
+     * The grid is a snapshot, so writing to it does not change the board.
+     */
     public ChessPiece[][] getSquares (){
-        return this.squares;
+        var squares = new ChessPiece[8][8];
+        for (long bits = occupied; bits != 0; bits &= bits - 1) {
+            int square = Long.numberOfTrailingZeros(bits);
+            squares[square >>> 3][square & 7] = ChessPiece.of(pieceAt(square));
+        }
+        return squares;
     }
 
 
     public Collection<ChessPiece> getPieces(ChessGame.TeamColor team) {
         HashSet<ChessPiece> pieces = new HashSet<ChessPiece>();
 
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPosition myPos = new ChessPosition(i, j);
-                ChessPiece myPiece = this.getPiece(myPos);
-                if (myPiece != null && myPiece.getTeamColor() != team) {
-                    pieces.add(myPiece);
-                }
+        for (int piece = 0; piece < Bitboards.NUM_PIECES; piece++) {
+            if (this.pieces[piece] != 0 && Bitboards.colorOf(piece) != team) {
+                pieces.add(ChessPiece.of(piece));
             }
         }
 
@@ -138,16 +267,12 @@ public class ChessBoard {
     }
 
     public ChessPosition getPosition(ChessPiece piece) {
-        for (int row = 1; row <= 8; row++) {
-            for (int col = 1; col <= 8; col++) {
-                ChessPosition currentPosition = new ChessPosition(row, col);
-                ChessPiece currentPiece = this.getPiece(currentPosition);
-                if (currentPiece != null && currentPiece.equals(piece)) {
-                    return currentPosition;
-                }
-            }
+        long bits = pieces[Bitboards.pieceIndex(piece)];
+        if (bits == 0) {
+            return null; // if the piece is not found on the board
         }
-        return null; // if the piece is not found on the board
+        int square = Long.numberOfTrailingZeros(bits);
+        return ChessPosition.of(square);
     }
 
     /**
@@ -160,43 +285,220 @@ public class ChessBoard {
         if (position == null) {
             return null;
         }
-        if (position.getRow() < 1 || position.getRow() > 8 || position.getColumn() < 1 || position.getColumn() > 8) {
+        if (!Bitboards.onBoard(position.getRow(), position.getColumn())) {
             return null;
         }
-        return squares[position.getRow() - 1][position.getColumn() - 1];
+        int piece = pieceAt(Bitboards.square(position));
+        return piece == Bitboards.NO_PIECE ? null : ChessPiece.of(piece);
     }
 
 
     public Collection<ChessMove> getAllMoves(ChessGame.TeamColor color) {
         Collection<ChessMove> allMoves = new HashSet<>();
+        var moves = new MoveList();
+        MoveGenerator.pseudoLegalMoves(this, color, ~0L, moves);
+        moves.collect(allMoves);
+        return allMoves;
+    }
 
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition myPos = new ChessPosition(i, j);
-                ChessPiece myPiece = this.getPiece(myPos);
-                if (myPiece != null && myPiece.getTeamColor() == color) {
-                    Collection<ChessMove> moves = myPiece.pieceMoves(this, myPos);
-                    allMoves.addAll(moves);
-                }
-            }
+
+
+    public ChessPosition findKing(ChessGame.TeamColor color) {
+        int square = kingSquare(color);
+        return square == Bitboards.NO_PIECE ? null : ChessPosition.of(square);
+    }
+
+    /**
+     * Determines if any piece of a team attacks a square, whether or not the square is occupied.
+     * Rather than generating the team's moves, this looks outward from the square: a knight
+     * jump, king step, pawn capture or open rook/bishop line from the square that lands on a
+     * matching piece of that team means the square is attacked.
+     *
+     * @param position the square to test
+     * @param byColor  the attacking team
+     * @return True if a piece of that team attacks the square
+     */
+    public boolean isSquareAttacked(ChessPosition position, ChessGame.TeamColor byColor) {
+        return isSquareAttacked(Bitboards.square(position), byColor);
+    }
+
+    boolean isSquareAttacked(int square, ChessGame.TeamColor byColor) {
+        return attackersOf(square, byColor, occupied) != 0;
+    }
+
+    /**
+     * @return bitboard of the pieces of a team that attack a square, with sliders
+     * blocked by the given occupancy
+     */
+    long attackersOf(int square, ChessGame.TeamColor byColor, long occupancy) {
+        int base = byColor.ordinal() * 6;
+        long queens = pieces[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        // a pawn of byColor attacks this square exactly when a pawn of the other color here would attack it
+        return (Attacks.PAWN[Bitboards.opponent(byColor).ordinal()][square] & pieces[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Attacks.KNIGHT[square] & pieces[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Attacks.KING[square] & pieces[base + ChessPiece.PieceType.KING.ordinal()])
+                | (Attacks.bishop(square, occupancy) & (pieces[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens))
+                | (Attacks.rook(square, occupancy) & (pieces[base + ChessPiece.PieceType.ROOK.ordinal()] | queens));
+    }
+
+    /**
+     * @return True if the team's king is attacked; a team without a king is never in check
+     */
+    boolean isInCheck(ChessGame.TeamColor color) {
+        int square = kingSquare(color);
+        return square != Bitboards.NO_PIECE && isSquareAttacked(square, Bitboards.opponent(color));
+    }
+
+    /**
+     * The king bitboards are kept up to date by every add, remove and move, so the king's
+     * square is a single bit scan rather than a search of the board. If a team somehow has
+     * several kings this is the lowest one, matching the old row-by-row search.
+     *
+     * @return the square of the team's king, or {@link Bitboards#NO_PIECE} if it has none
+     */
+    int kingSquare(ChessGame.TeamColor color) {
+        long kings = pieces[Bitboards.pieceIndex(color, ChessPiece.PieceType.KING)];
+        return kings == 0 ? Bitboards.NO_PIECE : Long.numberOfTrailingZeros(kings);
+    }
+
+
+    // ----------------------------------------------------------BITBOARD ACCESS -----------------------------------------
+
+    /**
+     * @return the piece index on a square, or {@link Bitboards#NO_PIECE} if it is empty
+     */
+    int pieceAt(int square) {
+        return mailbox[square] - 1;
+    }
+
+    long pieces(int piece) {
+        return pieces[piece];
+    }
+
+    long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[Bitboards.pieceIndex(color, type)];
+    }
+
+    long occupancy(ChessGame.TeamColor color) {
+        return colors[color.ordinal()];
+    }
+
+    long occupied() {
+        return occupied;
+    }
+
+    int midgameScore() {
+        return midgameScore;
+    }
+
+    int endgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * @return how much non-pawn material is left, {@link Evaluation#MAX_PHASE} at the start
+     */
+    int phase() {
+        return phase;
+    }
+
+    private void putPiece(int square, int piece) {
+        long bit = Bitboards.bit(square);
+        pieces[piece] |= bit;
+        colors[piece / 6] |= bit;
+        occupied |= bit;
+        mailbox[square] = (byte) (piece + 1);
+        placementKey ^= Zobrist.piece(piece, square);
+        if (piece % 6 == ChessPiece.PieceType.PAWN.ordinal()) {
+            pawnKey ^= Zobrist.piece(piece, square);
         }
+        midgameScore += Evaluation.MIDGAME[piece][square];
+        endgameScore += Evaluation.ENDGAME[piece][square];
+        phase += Evaluation.PHASE_WEIGHTS[piece % 6];
+    }
 
-        return allMoves;
+    private void clearSquare(int square) {
+        int piece = pieceAt(square);
+        if (piece == Bitboards.NO_PIECE) {
+            return;
+        }
+        long bit = Bitboards.bit(square);
+        pieces[piece] &= ~bit;
+        colors[piece / 6] &= ~bit;
+        occupied &= ~bit;
+        mailbox[square] = 0;
+        placementKey ^= Zobrist.piece(piece, square);
+        if (piece % 6 == ChessPiece.PieceType.PAWN.ordinal()) {
+            pawnKey ^= Zobrist.piece(piece, square);
+        }
+        midgameScore -= Evaluation.MIDGAME[piece][square];
+        endgameScore -= Evaluation.ENDGAME[piece][square];
+        phase -= Evaluation.PHASE_WEIGHTS[piece % 6];
     }
 
+    private void clear() {
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colors, 0L);
+        Arrays.fill(mailbox, (byte) 0);
+        occupied = 0L;
+        placementKey = 0L;
+        pawnKey = 0L;
+        midgameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        // moves played on the old position can't be taken back on the new one
+        undoCount = 0;
+        teamTurn = ChessGame.TeamColor.WHITE;
+    }
 
+    /**
+     * Recomputes the bitboards, keys and scores from the mailbox, keeping the side to move
+     */
+    private void rebuildFromMailbox() {
+        var squares = mailbox.clone();
+        var turn = teamTurn == null ? ChessGame.TeamColor.WHITE : teamTurn;
+        clear();
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            if (squares[square] != 0) {
+                putPiece(square, squares[square] - 1);
+            }
+        }
+        teamTurn = turn;
+    }
 
-    public ChessPosition findKing(ChessGame.TeamColor color) {
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition myPos = new ChessPosition(i, j);
-                ChessPiece myPiece = this.getPiece(myPos);
-                if (myPiece != null && myPiece.getTeamColor() == color && myPiece.getPieceType() == ChessPiece.PieceType.KING) {
-                    return myPos;
+    /**
+     * Lets Gson read and write boards field by field as usual, then rebuilds the derived state
+     * of each board it reads, which isn't in the JSON
+     */
+    static final class Rebuilder implements TypeAdapterFactory {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            var fields = gson.getDelegateAdapter(this, TypeToken.get(ChessBoard.class));
+            return (TypeAdapter<T>) new TypeAdapter<ChessBoard>() {
+                @Override
+                public void write(JsonWriter out, ChessBoard board) throws IOException {
+                    fields.write(out, board);
                 }
-            }
+
+                @Override
+                public ChessBoard read(JsonReader in) throws IOException {
+                    var board = fields.read(in);
+                    if (board != null) {
+                        if (board.mailbox.length != Bitboards.NUM_SQUARES) {
+                            throw new JsonParseException("Board has " + board.mailbox.length + " squares");
+                        }
+                        for (byte square : board.mailbox) {
+                            if (square < 0 || square > Bitboards.NUM_PIECES) {
+                                throw new JsonParseException("Bad piece " + square + " on board");
+                            }
+                        }
+                        board.rebuildFromMailbox();
+                    }
+                    return board;
+                }
+            };
         }
-        return null;
     }
 
 
@@ -214,6 +516,7 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
+        clear();
         var boardText = """
                 |r|n|b|q|k|b|n|r|
                 |p|p|p|p|p|p|p|p|
@@ -239,9 +542,7 @@ public class ChessBoard {
                     ChessGame.TeamColor color = Character.isLowerCase(c) ? ChessGame.TeamColor.BLACK
                             : ChessGame.TeamColor.WHITE;
                     var type = charToTypeMap.get(Character.toLowerCase(c));
-                    var position = new ChessPosition(row, column);
-                    var piece = new ChessPiece(color, type);
-                    this.addPiece(position, piece);
+                    putPiece(Bitboards.square(row, column), Bitboards.pieceIndex(color, type));
                     column++;
                 }
             }
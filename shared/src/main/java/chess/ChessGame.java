@@ -1,6 +1,7 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -14,13 +15,64 @@ import java.util.HashSet;
 public class ChessGame {
 
     private ChessBoard board;
-    private ChessBoard copyBoard;
-    private TeamColor turn;
+    private MoveGeneration moveGeneration = MoveGeneration.LEGAL;
+    private transient MoveCache moveCache = MoveCache.shared();
+    private final transient MoveList moveBuffer = new MoveList();
+    // holds a full move list on its way into the cache
+    private final transient MoveList cacheBuffer = new MoveList();
+
+    // Zobrist keys of the position before each move played, in a ring. Only positions since the
+    // last capture or pawn move can come up again, and after 100 of those the game is drawn
+    // anyway, so the ring never needs more than that.
+    private static final int HISTORY_SIZE = 128;
+    private final transient long[] history = new long[HISTORY_SIZE];
+    private transient int plies;
+    // moves since the last capture or pawn move
+    private transient int halfmoveClock;
+    // starts at 1 and goes up after each black move
+    private transient int fullmoveNumber = 1;
+    // packed moves played since the game was set up, for storing games as move lists, and the
+    // key of the position each one led to, for indexing them
+    private transient int[] moveLog = new int[0];
+    private transient long[] keyLog = new long[0];
+    private transient int loggedMoves;
 
     public ChessGame() {
         board = new ChessBoard();
         board.resetBoard();
-        turn = TeamColor.WHITE;
+    }
+
+    ChessGame(ChessBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Sets up a game from Forsyth-Edwards Notation. Castling rights and the en passant square
+     * are read but have no meaning in this game; the clocks are optional.
+     *
+     * @param fen the position, read in place without being copied
+     * @throws IllegalArgumentException if the text is not a FEN record
+     */
+    public static ChessGame fromFen(CharSequence fen) {
+        return Fen.parse(fen);
+    }
+
+    /**
+     * @return the position in Forsyth-Edwards Notation
+     */
+    public String toFen() {
+        return appendFen(new StringBuilder(90)).toString();
+    }
+
+    /**
+     * Writes the position in Forsyth-Edwards Notation, with {@code -} for castling rights and
+     * the en passant square
+     *
+     * @param out where to append it
+     * @return out
+     */
+    public StringBuilder appendFen(StringBuilder out) {
+        return Fen.write(this, out);
     }
 
 
@@ -39,7 +91,7 @@ public class ChessGame {
      * @return Which team's turn it is
      */
     public TeamColor getTeamTurn() {
-        return this.turn;
+        return this.board.getTeamTurn();
     }
 
     /**
@@ -48,11 +100,25 @@ public class ChessGame {
      * @param team the team whose turn it is
      */
     public void setTeamTurn(TeamColor team) {
-        this.turn = team;
+        this.board.setTeamTurn(team);
     }
 
-    private void switchTeamTurn() {
-        this.turn = this.turn == TeamColor.BLACK ? TeamColor.WHITE : TeamColor.BLACK;
+    /**
+     * Evaluates the current position without searching: material, piece placement,
+     * mobility and king safety, blended between middlegame and endgame values
+     *
+     * @return the score in centipawns; positive when the team whose turn it is stands better
+     */
+    public int evaluate() {
+        return Evaluation.evaluate(this.board);
+    }
+
+    /**
+     * @return the Zobrist key of the current position, including whose turn it is
+     * @see ChessBoard#getZobristKey()
+     */
+    public long getZobristKey() {
+        return this.board.getZobristKey();
     }
 
     /**
@@ -63,6 +129,67 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * How legal moves are found
+     */
+    public enum MoveGeneration {
+        /**
+         * Generate each piece's moves with {@link ChessPiece#pieceMoves}, then play each one
+         * and keep it if it doesn't leave the mover in check
+         */
+        SIMULATE,
+        /**
+         * Work out checks and pins first and only generate legal moves
+         */
+        LEGAL
+    }
+
+    /**
+     * Where a team stands at the start of its turn
+     */
+    public enum GameStatus {
+        NORMAL,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        /**
+         * The same position, with the same team to move, has come up three times
+         */
+        REPETITION,
+        /**
+         * Fifty moves by each team have gone by without a capture or a pawn move
+         */
+        FIFTY_MOVES
+    }
+
+    public MoveGeneration getMoveGeneration() {
+        return this.moveGeneration;
+    }
+
+    /**
+     * Chooses how {@link #validMoves} and {@link #allValidMoves} find legal moves.
+     * Both give the same moves; {@link MoveGeneration#LEGAL} is the default.
+     *
+     * @param moveGeneration the approach to use
+     */
+    public void setMoveGeneration(MoveGeneration moveGeneration) {
+        this.moveGeneration = moveGeneration;
+    }
+
+    public MoveCache getMoveCache() {
+        return this.moveCache;
+    }
+
+    /**
+     * Chooses where legal moves are looked up before generating them. Every game uses
+     * {@link MoveCache#shared()} unless told otherwise.
+     *
+     * @param moveCache the cache to use, or null to always generate moves
+     */
+    public void setMoveCache(MoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -73,35 +200,16 @@ public class ChessGame {
      */
 
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        // this is because I'm making the turn to the current piece, and switching it back
-        TeamColor oldColor = this.turn;
-
         ChessPiece myPiece = this.board.getPiece(startPosition);
 
         if (myPiece == null) {
             return new HashSet<>(); // Return an empty set if no piece, or it's not the piece's turn
         }
 
-        this.turn = myPiece.getTeamColor();
-
+        var moves = new MoveList();
+        legalMoves(this.board, myPiece.getTeamColor(), Bitboards.bit(Bitboards.square(startPosition)), moves);
         HashSet<ChessMove> finalMoves = new HashSet<>();
-        Collection<ChessMove> moves = myPiece.pieceMoves(this.board, startPosition);
-        ChessBoard clonedBoard = new ChessBoard(this.board); // Clone the board to simulate moves
-
-        for (ChessMove move : moves) {
-            ChessPiece capturedPiece = clonedBoard.getPiece(move.end); // Save the captured piece
-            clonedBoard.movePiece(move.start, move.end); // Make the move
-
-            if (!isOtherBoardInCheck(myPiece.getTeamColor(), clonedBoard)) {
-                finalMoves.add(move);
-            }
-
-            // Undo the move
-            clonedBoard.movePiece(move.end, move.start);
-            clonedBoard.addPiece(move.end, capturedPiece); // Restore the captured piece, if any
-        }
-
-        this.turn = oldColor;
+        moves.collect(finalMoves);
         return finalMoves;
     }
 
@@ -114,7 +222,7 @@ public class ChessGame {
             return false;
         }
 
-        if (piece.getTeamColor() != this.turn) {
+        if (piece.getTeamColor() != getTeamTurn()) {
             return false;
         }
 
@@ -129,7 +237,6 @@ public class ChessGame {
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
         ChessPosition start = move.start;
-        ChessPosition end = move.end;
 
         ChessPiece piece = board.getPiece(start);
         if (piece == null) {
@@ -140,32 +247,42 @@ public class ChessGame {
             throw new InvalidMoveException("Invalid move");
         }
 
-        Collection<ChessMove> validMoves = validMoves(start);
+        // compare packed moves so validating doesn't build a ChessMove for every candidate
+        int packed = move.pack();
+        moveBuffer.clear();
+        legalMoves(this.board, piece.getTeamColor(), Bitboards.bit(Move.from(packed)), moveBuffer);
 
-        if (!validMoves.contains(move)) {
+        if (!moveBuffer.contains(packed)) {
             throw new InvalidMoveException("Invalid move");
         }
 
-        this.board.removePiece(start);
-        this.board.addPiece(end, piece);
-
-        // Check for Pawn Promotion
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            // Check if the pawn has reached the end of the board for promotion
-            if ((piece.getTeamColor() == TeamColor.WHITE && end.getRow() == 8) ||
-                    (piece.getTeamColor() == TeamColor.BLACK && end.getRow() == 1)) {
-                // Handle promotion
-                if (move.getPromotionPiece() == null) {
-                    throw new InvalidMoveException("Pawn reached the end of the board but no promotion piece was specified.");
-                }
-                // Replace the pawn with the promotion piece
-                this.board.removePiece(end);
-                ChessPiece promotionPiece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
-                this.board.addPiece(end, promotionPiece);
-            }
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN
+                || board.pieceAt(Move.to(packed)) != Bitboards.NO_PIECE;
+        history[plies++ & (HISTORY_SIZE - 1)] = board.getZobristKey();
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+        if (piece.getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber++;
         }
 
-        switchTeamTurn();
+        // promotions are part of the move, so the board swaps the pawn and passes the turn itself
+        this.board.makeMove(packed);
+
+        if (loggedMoves == moveLog.length) {
+            moveLog = Arrays.copyOf(moveLog, Math.max(16, moveLog.length * 2));
+            keyLog = Arrays.copyOf(keyLog, moveLog.length);
+        }
+        moveLog[loggedMoves] = packed;
+        keyLog[loggedMoves++] = board.getZobristKey();
+    }
+
+    /**
+     * Makes a packed move, see {@link #makeMove(ChessMove)}
+     *
+     * @param move the move, packed as described in {@link Move}
+     * @throws InvalidMoveException if move is invalid
+     */
+    public void makeMove(int move) throws InvalidMoveException {
+        makeMove(ChessMove.fromPacked(move));
     }
 
     private boolean OOB(ChessPosition pos) {
@@ -179,48 +296,48 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        TeamColor otherTeam = teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
-        Collection<ChessMove> otherTeamMoves = board.getAllMoves(otherTeam);
-        ChessPosition kingPos = board.findKing(teamColor);
-
-        for (ChessMove move : otherTeamMoves) {
-            if (move.getEndPosition().equals(kingPos)) {
-                return true;
-            }
-        }
-
-        return false;
+        return board.isInCheck(teamColor);
     }
 
     public boolean isOtherBoardInCheck(TeamColor teamColor, ChessBoard otherBoard) {
-        TeamColor otherTeam = teamColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
-
-        Collection<ChessMove> otherTeamMoves = otherBoard.getAllMoves(otherTeam);
-        ChessPosition kingPos = otherBoard.findKing(teamColor);
-
-        for (ChessMove move : otherTeamMoves) {
-            if (move.getEndPosition().equals(kingPos)) {
-                return true;
-            }
-        }
-
-        return false;
+        return otherBoard.isInCheck(teamColor);
     }
 
     public Collection<ChessMove> allValidMoves(TeamColor teamColor, ChessBoard myBoard) {
+        var moves = new MoveList();
+        legalMoves(myBoard, teamColor, ~0L, moves);
         Collection<ChessMove> allMoves = new HashSet<>();
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                ChessPosition myPos = new ChessPosition(i, j);
-                ChessPiece chessPiece = myBoard.getPiece(myPos);
-                if (chessPiece != null && chessPiece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(myPos);
-                    allMoves.addAll(moves);
-                }
+        moves.collect(allMoves);
+        return allMoves;
+    }
+
+    /**
+     * Adds the legal moves of a team's pieces on the given squares, taking them from the
+     * move cache when the position is there and caching the team's full move list when not
+     */
+    private void legalMoves(ChessBoard myBoard, TeamColor teamColor, long from, MoveList moves) {
+        if (moveCache == null) {
+            generateMoves(myBoard, teamColor, from, moves);
+            return;
+        }
+        int[] cached = moveCache.get(myBoard, teamColor);
+        if (cached == null) {
+            cacheBuffer.clear();
+            generateMoves(myBoard, teamColor, ~0L, cacheBuffer);
+            cached = moveCache.put(myBoard, teamColor, cacheBuffer);
+        }
+        for (int move : cached) {
+            if ((Bitboards.bit(Move.from(move)) & from) != 0) {
+                moves.add(move);
             }
         }
+    }
 
-        return allMoves;
+    void generateMoves(ChessBoard myBoard, TeamColor teamColor, long from, MoveList moves) {
+        switch (moveGeneration) {
+            case SIMULATE -> MoveGenerator.simulatedMoves(myBoard, teamColor, from, moves);
+            case LEGAL -> MoveGenerator.legalMoves(myBoard, teamColor, from, moves);
+        }
     }
 
 
@@ -234,7 +351,7 @@ public class ChessGame {
         if (!isInCheck(teamColor)) {
             return false; // Not in checkmate if not in check
         }
-        return allValidMoves(teamColor, board).isEmpty();
+        return !hasValidMove(teamColor);
     }
 
     /**
@@ -249,7 +366,145 @@ public class ChessGame {
            return false;
         }
 
-        return allValidMoves(teamColor, board).isEmpty();
+        return !hasValidMove(teamColor);
+    }
+
+    /**
+     * Works out check, checkmate, stalemate and the draws by repetition and the fifty-move
+     * rule together. The check test is done once and move generation stops at the first legal
+     * move found, so this is cheaper than asking {@link #isInStalemate}, {@link #isInCheckmate}
+     * and {@link #isInCheck} in turn. A mate on the move that would draw still counts as mate.
+     *
+     * @param teamColor which team to get the status of
+     * @return the team's status
+     */
+    public GameStatus getStatus(TeamColor teamColor) {
+        boolean inCheck = isInCheck(teamColor);
+        if (!hasValidMove(teamColor)) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.REPETITION;
+        }
+        if (halfmoveClock >= 100) {
+            return GameStatus.FIFTY_MOVES;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.NORMAL;
+    }
+
+    /**
+     * @return True if the current position has come up twice before with the same team to
+     * move. Only keys are compared, going back no further than the last capture or pawn move.
+     */
+    public boolean isThreefoldRepetition() {
+        long key = board.getZobristKey();
+        int count = 0;
+        int reach = Math.min(Math.min(halfmoveClock, plies), HISTORY_SIZE);
+        for (int back = 2; back <= reach; back += 2) {
+            if (history[(plies - back) & (HISTORY_SIZE - 1)] == key && ++count == 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return the number of the move being played, starting at 1 and going up after each
+     * black move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the number of moves played since the start of the game, by either team, worked
+     * out from the move number so that it counts moves from before a game was set up too
+     */
+    public int getPlyCount() {
+        return 2 * (fullmoveNumber - 1) + (getTeamTurn() == TeamColor.BLACK ? 1 : 0);
+    }
+
+    /**
+     * @return the ply count the game was set up at, so the first ply {@link #getMovesSince}
+     * knows the moves after
+     */
+    public int getSetUpPly() {
+        return getPlyCount() - loggedMoves;
+    }
+
+    /**
+     * @param ply a ply count this game has passed since it was set up
+     * @return the moves played after that ply, packed as described in {@link Move}
+     * @throws IllegalArgumentException if the game was set up after that ply, so doesn't know
+     *                                  the moves, or hasn't reached it yet
+     */
+    public int[] getMovesSince(int ply) {
+        return Arrays.copyOfRange(moveLog, firstLogged(ply), loggedMoves);
+    }
+
+    /**
+     * @param ply a ply count this game has passed since it was set up
+     * @return the Zobrist keys of the positions the moves after that ply led to, in the order
+     * of {@link #getMovesSince}
+     * @throws IllegalArgumentException if the game was set up after that ply or hasn't reached it
+     */
+    public long[] getKeysSince(int ply) {
+        return Arrays.copyOfRange(keyLog, firstLogged(ply), loggedMoves);
+    }
+
+    private int firstLogged(int ply) {
+        int first = getSetUpPly();
+        if (ply < first || ply > getPlyCount()) {
+            throw new IllegalArgumentException("No moves known since ply " + ply + ", only since " + first);
+        }
+        return ply - first;
+    }
+
+    /**
+     * Sets the clocks of a game set up in the middle
+     */
+    void setClocks(int halfmoveClock, int fullmoveNumber) {
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * @return keys of the positions since the last capture or pawn move, oldest first, not
+     * counting the current one
+     */
+    long[] positionHistory() {
+        int count = Math.min(Math.min(halfmoveClock, plies), HISTORY_SIZE);
+        var keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = history[(plies - count + i) & (HISTORY_SIZE - 1)];
+        }
+        return keys;
+    }
+
+    /**
+     * Generates moves one piece at a time and stops as soon as any piece has one
+     */
+    private boolean hasValidMove(TeamColor teamColor) {
+        int[] cached = moveCache == null ? null : moveCache.get(board, teamColor);
+        if (cached != null) {
+            return cached.length > 0;
+        }
+
+        // the king goes first, since in double check it is the only piece that can move
+        long kings = board.pieces(teamColor, ChessPiece.PieceType.KING);
+        moveBuffer.clear();
+        generateMoves(board, teamColor, kings, moveBuffer);
+        for (long rest = board.occupancy(teamColor) & ~kings; moveBuffer.isEmpty() && rest != 0; rest &= rest - 1) {
+            generateMoves(board, teamColor, rest & -rest, moveBuffer);
+        }
+        return !moveBuffer.isEmpty();
     }
 
     /**
@@ -258,7 +513,13 @@ public class ChessGame {
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
+        board.setTeamTurn(getTeamTurn()); // whose turn it is belongs to the game, not the board we were handed
         this.board = board;
+        // the moves played so far didn't lead here
+        this.plies = 0;
+        this.loggedMoves = 0;
+        this.halfmoveClock = 0;
+        this.fullmoveNumber = 1;
     }
 
     /**
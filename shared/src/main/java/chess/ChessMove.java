@@ -20,6 +20,24 @@ public class ChessMove {
         this.promotion = promotionPiece;
     }
 
+    /**
+     * Builds the public view of a packed move
+     *
+     * @param move the move, packed as described in {@link Move}
+     */
+    static ChessMove fromPacked(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        return new ChessMove(ChessPosition.of(from), ChessPosition.of(to), Move.promotion(move));
+    }
+
+    /**
+     * @return this move packed as described in {@link Move}, without flags
+     */
+    int pack() {
+        return Move.encode(Bitboards.square(start), Bitboards.square(end), promotion, false);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -42,7 +60,9 @@ public class ChessMove {
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.start, this.end, this.promotion);
+        int result = Objects.hashCode(start);
+        result = result * 31 + Objects.hashCode(end);
+        return result * 31 + (promotion == null ? 0 : promotion.ordinal() + 1);
     }
 
     /**
@@ -2,7 +2,6 @@ package chess;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Objects;
 
 /**
  * Represents a single chess piece
@@ -15,11 +14,34 @@ public class ChessPiece {
     private final PieceType pieceType;
     private final ChessGame.TeamColor color;
 
+    // one shared instance per colored piece, indexed like Bitboards pieces
+    private static final ChessPiece[] PIECES = new ChessPiece[Bitboards.NUM_PIECES];
+
+    static {
+        for (var color : ChessGame.TeamColor.values()) {
+            for (var type : PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceType = type;
         this.color = pieceColor;
     }
 
+    /**
+     * Gets the shared piece of a color and type. Pieces are immutable, so the twelve
+     * instances made up front can be handed out everywhere.
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[Bitboards.pieceIndex(pieceColor, type)];
+    }
+
+    static ChessPiece of(int piece) {
+        return PIECES[piece];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -30,7 +52,8 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pieceType, color);
+        // fields may be null on instances made by Gson
+        return (pieceType == null ? 0 : pieceType.ordinal() + 1) * 31 + (color == null ? 0 : color.ordinal() + 1);
     }
 
 
@@ -84,359 +107,92 @@ public class ChessPiece {
         ChessPiece newPiece;
 
         switch (piece) {
-            case 'B' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.BISHOP);
-            case 'K' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.KING);
-            case 'Q' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.QUEEN);
-            case 'P' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.PAWN);
-            case 'k' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.KING);
-            case 'q' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.QUEEN);
-            case 'N' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.KNIGHT);
-            case 'R' -> newPiece=new ChessPiece(ChessGame.TeamColor.WHITE, PieceType.ROOK);
-            case 'p' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.PAWN);
-            case 'r' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.ROOK);
-            case 'n' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.KNIGHT);
-            case 'b' -> newPiece=new ChessPiece(ChessGame.TeamColor.BLACK, PieceType.BISHOP);
+            case 'B' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.BISHOP);
+            case 'K' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.KING);
+            case 'Q' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.QUEEN);
+            case 'P' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.PAWN);
+            case 'k' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.KING);
+            case 'q' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.QUEEN);
+            case 'N' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.KNIGHT);
+            case 'R' -> newPiece=of(ChessGame.TeamColor.WHITE, PieceType.ROOK);
+            case 'p' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.PAWN);
+            case 'r' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.ROOK);
+            case 'n' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.KNIGHT);
+            case 'b' -> newPiece=of(ChessGame.TeamColor.BLACK, PieceType.BISHOP);
             default -> newPiece=null;
         }
 
         return newPiece;
     }
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        HashSet<ChessMove> moves = new HashSet<>();
         // get the piece I need to analyze
         var piece = board.getPiece(myPosition);
-
-        switch (piece.getPieceType()) {
-            case BISHOP -> {
-                var bMoves = getBishopMoves(board, myPosition, piece);
-                moves.addAll(bMoves);
-            }
-            case PAWN -> {
-                var pMoves = getPawnMoves(board, myPosition, piece);
-                moves.addAll(pMoves);
-            }
-            case KING -> {
-                var kMoves = getKingMoves(board, myPosition, piece);
-                moves.addAll(kMoves);
-            }
-            case QUEEN -> {
-                var qMoves = getQueenMoves(board, myPosition, piece);
-                moves.addAll(qMoves);
-            }
-            case ROOK -> {
-                var rMoves = getRookMoves(board, myPosition, piece);
-                moves.addAll(rMoves);
-            }
-            case KNIGHT -> {
-                var kMoves = getKnightMoves(board, myPosition, piece);
-                moves.addAll(kMoves);
-            }
-            case null, default -> {
-                return null;
-            }
-        }
-
-        return moves;
-    }
-
-    // ----------------------------------------------------------KNIGHT STUFF -----------------------------------------
-    private Collection<ChessMove> getKnightMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        int[][] directions = {
-                {2, 1}, // up 2 right 1
-                {2, -1}, // up 2 left 1
-                {-2, 1}, // down 2 right 1
-                {-2, -1}, // down 2 left 1
-                {1, 2}, // up 1 right 2
-                {-1, 2}, // down 1 right 2
-                {1, -2}, // up 1 left 2
-                {-1, -2}, // down 1 left 2
-        };
-        for (int[] direction : directions) {
-            int dr = direction[0];
-            int dc = direction[1];
-            handleKnightMoves(pos, dr, dc, board, me, moves);
-        }
-        return moves;
-    }
-
-    private void handleKnightMoves(ChessPosition og, int dr, int dc, ChessBoard board, ChessPiece me, HashSet<ChessMove> moves) {
-        int nr = og.getRow() + dr;
-        int nc = og.getColumn() + dc;
-
-        // is it in bounds?
-        if (nr < 1 || nr > 8 || nc < 1 || nc > 8) {
-            return;
-        }
-
-        var newPos = new ChessPosition(nr, nc);
-        var occupiedPiece = board.getPiece(newPos);
-        var newMove = new ChessMove(og, newPos, null);
-        if (occupiedPiece == null) {
-            moves.add(newMove);
-        } else {
-            if (occupiedPiece.color != me.color) {
-                moves.add(newMove);
-            }
-        }
-    }
-
-    // ----------------------------------------------------------ROOK STUFF -----------------------------------------
-    private Collection<ChessMove> getRookMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        int[][] directions = {
-                {1, 0}, // up
-                {-1, 0}, // down
-                {0, -1}, // left
-                {0, 1}, // right
-        };
-        for (int[] direction : directions) {
-            int dr = direction[0];
-            int dc = direction[1];
-            dfs(pos, pos, board, moves, dr, dc, me.color);
-        }
-        return moves;
-    }
-
-    // ----------------------------------------------------------QUEEN STUFF -----------------------------------------
-    private Collection<ChessMove> getQueenMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        int[][] directions = {
-                {1, 0}, // up
-                {-1, 0}, // down
-                {0, -1}, // left
-                {0, 1}, // right
-                {1, -1}, // up and left
-                {1, 1}, // up and right
-                {-1, -1}, // down and left
-                {-1, 1}, // down and right
-        };
-        for (int[] direction : directions) {
-            int dr = direction[0];
-            int dc = direction[1];
-            dfs(pos, pos, board, moves, dr, dc, me.color);
-        }
-        return moves;
-    }
-
-    // ----------------------------------------------------------KING STUFF -----------------------------------------
-    private Collection<ChessMove> getKingMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        int[][] directions = {
-                {1, 0}, // up
-                {-1, 0}, // down
-                {0, -1}, // left
-                {0, 1}, // right
-                {1, -1}, // up and left
-                {1, 1}, // up and right
-                {-1, -1}, // down and left
-                {-1, 1}, // down and right
-        };
-
-        for (int[] direction : directions) {
-            int dr = direction[0];
-            int dc = direction[1];
-            handleKingMove(pos, dr, dc, board, me, moves);
-        }
-        return moves;
-    }
-
-    private void handleKingMove(ChessPosition og, int dr, int dc, ChessBoard board, ChessPiece me, HashSet<ChessMove> moves) {
-        int nr = og.getRow() + dr;
-        int nc = og.getColumn() + dc;
-
-        // see if new position is OOB
-        if (nr < 1 || nr > 8 || nc < 1 || nc > 8) {
-            return;
-        }
-
-        // otherwise see if anyone is there at the new position
-        var newPos = new ChessPosition(nr, nc);
-        // if empty just add it
-        if (board.getPiece(newPos) == null) {
-            var newChessMove = new ChessMove(og, newPos, null);
-            moves.add(newChessMove);
-        } else {
-            // if it's enemy team capture it
-            var piece = board.getPiece(newPos);
-            if (piece.color != me.color) {
-                if (piece.getPieceType() != PieceType.QUEEN){
-                    var newChessMove = new ChessMove(og, newPos, null);
-                    moves.add(newChessMove);
-                }
-            }
-        }
-
-    }
-
-
-// ----------------------------------------------------------PAWN STUFF -----------------------------------------
-
-    /**
-     * See if we are able to promote
-     *
-     * @param start og pos
-     * @param pos   target pos
-     * @param me    piece we are moving
-     * @param moves HashMap of moves
-     * @return true if we can promote, false if we can't
-     */
-    private boolean canPromote(ChessPosition start, ChessPosition pos, ChessPiece me, HashSet<ChessMove> moves) {
-        if (pos.getRow() == 8 || pos.getRow() == 1) {
-            for (PieceType piece : PieceType.values()) {
-                if (piece != PieceType.KING && piece != me.pieceType) {
-                    var move = new ChessMove(start, pos, piece);
-                    moves.add(move);
-                }
-            }
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * If we can promote, handle capturing and promoting
-     *
-     * @param board       Game board
-     * @param pos         our position
-     * @param me          our piece
-     * @param moves       HashMap of moves
-     * @param capture_pos position we are going to capture
-     */
-    private void handlePromote(ChessBoard board, ChessPosition pos, ChessPiece me, HashSet<ChessMove> moves, ChessPosition capture_pos) {
-        if (board.getPiece(capture_pos) != null) {
-            if (board.getPiece(capture_pos).color != me.color) {
-                boolean didPromote = canPromote(pos, capture_pos, me, moves);
-                if (!didPromote) {
-                    var newMove = new ChessMove(pos, capture_pos, null);
-                    moves.add(newMove);
-                }
-            }
-        }
-    }
-
-    /**
-     * @param board Game board
-     * @param pos   Our position
-     * @param me    Our piece
-     * @return HashSet of Pawn moves
-     */
-    private Collection<ChessMove> getPawnMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-        int direction = me.color == ChessGame.TeamColor.WHITE ? 1 : -1;
-
-        // -------------------------------- see if OOB
-        if (pos.getRow() + direction > 8 || pos.getRow() + direction < 0) {
-            return moves;
-        }
-
-        // -------------------------------- see if open space
-        var newSquare = new ChessPosition(pos.getRow() + direction, pos.getColumn());
-        var piece = board.getPiece(newSquare);
-        // if there is an open square ahead
         if (piece == null) {
-            // can we promote?
-            boolean didPromote = canPromote(pos, newSquare, me, moves);
-            if (!didPromote) {
-                // handle initial positions (jumping 2 squares)
-                var nextPos = new ChessPosition(newSquare.getRow() + direction, newSquare.getColumn());
-                if (me.color == ChessGame.TeamColor.WHITE && pos.getRow() == 2) {
-                    if (board.getPiece(nextPos) == null) {
-                        var move2 = new ChessMove(pos, nextPos, null);
-                        moves.add(move2);
-                    }
-                    var move1 = new ChessMove(pos, newSquare, null);
-                    moves.add(move1);
-                } else if (me.color == ChessGame.TeamColor.BLACK && pos.getRow() == 7) {
-                    if (board.getPiece(nextPos) == null) {
-                        var move2 = new ChessMove(pos, nextPos, null);
-                        moves.add(move2);
-                    }
-                    var move1 = new ChessMove(pos, newSquare, null);
-                    moves.add(move1);
-                } else { // non-initial positions
-                    var newMove = new ChessMove(pos, newSquare, null);
-                    moves.add(newMove);
-                }
-            }
+            return null;
         }
 
-        // ----------------------------- see if we can capture (up and left or right)
-        var pos_capture_left = new ChessPosition(pos.getRow() + direction, pos.getColumn() - 1);
-        var pos_capture_right = new ChessPosition(pos.getRow() + direction, pos.getColumn() + 1);
-
-        // see if those captures can make us promote
-        handlePromote(board, pos, me, moves, pos_capture_left);
-        handlePromote(board, pos, me, moves, pos_capture_right);
-
-        return moves;
+        var moves = new MoveList();
+        MoveGenerator.pseudoLegalMoves(board, piece.color, Bitboards.bit(Bitboards.square(myPosition)), moves);
+        HashSet<ChessMove> chessMoves = new HashSet<>();
+        moves.collect(chessMoves);
+        return chessMoves;
     }
 
-
-// ----------------------------------------------------------BISHOP STUFF -----------------------------------------
-
     /**
-     * Get all Bishop moves
+     * Squares a piece can move to from a square, straight from the attack tables
      *
-     * @param board Game Board
-     * @param pos   Our Position
-     * @param me    Our piece
-     * @return HashSet of moves
+     * @param board game board
+     * @param from  square the piece stands on
+     * @param color which team the piece is on (its own pieces block it)
+     * @param type  type of the piece
+     * @return bitboard of target squares
      */
-    private Collection<ChessMove> getBishopMoves(ChessBoard board, ChessPosition pos, ChessPiece me) {
-        HashSet<ChessMove> moves = new HashSet<>();
-
-        dfs(pos, pos, board, moves, 1, 1, me.getTeamColor());
-        dfs(pos, pos, board, moves, -1, 1, me.getTeamColor());
-        dfs(pos, pos, board, moves, 1, -1, me.getTeamColor());
-        dfs(pos, pos, board, moves, -1, -1, me.getTeamColor());
-
-        return moves;
+    static long targets(ChessBoard board, int from, ChessGame.TeamColor color, PieceType type) {
+        long occupied = board.occupied();
+        long attacks = switch (type) {
+            case KNIGHT -> Attacks.KNIGHT[from];
+            case BISHOP -> Attacks.bishop(from, occupied);
+            case ROOK -> Attacks.rook(from, occupied);
+            case QUEEN -> Attacks.queen(from, occupied);
+            // kings are not allowed to capture queens
+            case KING -> Attacks.KING[from] & ~board.pieces(Bitboards.opponent(color), PieceType.QUEEN);
+            case PAWN -> pawnTargets(board, from, color);
+        };
+        return attacks & ~board.occupancy(color);
     }
 
+// ----------------------------------------------------------PAWN STUFF -----------------------------------------
+
     /**
-     * Perform a DFS in a certain direction, handling adding moves to a HashSet
+     * Pushes, double pushes from the starting row and captures for a pawn
      *
-     * @param ogPos  starting position
-     * @param curPos current position
-     * @param board  game board
-     * @param moves  HashSet of moves
-     * @param dr     direction to move in vertically
-     * @param dc     direction to move in horizontally
-     * @param color  which team we are on (handles captures)
+     * @param board Game board
+     * @param from  square the pawn is on
+     * @param color which team the pawn is on
+     * @return bitboard of target squares
      */
-    private void dfs(ChessPosition ogPos, ChessPosition curPos, ChessBoard board, Collection<ChessMove> moves,
-                     int dr, int dc, ChessGame.TeamColor color) {
-        int row = curPos.getRow();
-        int col = curPos.getColumn();
-        int nr = row + dr;
-        int nc = col + dc;
-
-        var newPos = new ChessPosition(nr, nc);
-
-        // edges
-        if (nr < 1 || nr > 8 || nc < 1 || nc > 8) {
-            return;
-        }
-
-        // collisions
-        if (board.getPiece(newPos) != null) {
-            // if it's an enemy we can take the square
-            var piece = board.getPiece(newPos);
-            if (piece.color != color) {
-                var newMove = new ChessMove(ogPos, newPos, null);
-                moves.add(newMove);
+    private static long pawnTargets(ChessBoard board, int from, ChessGame.TeamColor color) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int row = Bitboards.row(from);
+        if (row == (white ? 8 : 1)) {
+            return 0L;
+        }
+
+        long empty = ~board.occupied();
+        long targets = Attacks.PAWN[color.ordinal()][from] & board.occupancy(Bitboards.opponent(color));
+        int push = white ? from + 8 : from - 8;
+        if ((empty & Bitboards.bit(push)) != 0) {
+            targets |= Bitboards.bit(push);
+            int doublePush = white ? push + 8 : push - 8;
+            if (row == (white ? 2 : 7) && (empty & Bitboards.bit(doublePush)) != 0) {
+                targets |= Bitboards.bit(doublePush);
             }
-            return;
         }
-
-        // if valid update current position and moves
-        var newMove = new ChessMove(ogPos, newPos, null);
-        moves.add(newMove);
-
-        // repeat
-        dfs(ogPos, newPos, board, moves, dr, dc, color);
+        return targets;
     }
 
+    // piece letters indexed by color * 6 + type, white in upper case
+    static final char[] PIECE_CHARS = "KQBNRPkqbnrp".toCharArray();
 
+    static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.BISHOP, PieceType.KNIGHT, PieceType.ROOK};
 }
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -12,11 +10,35 @@ public class ChessPosition {
     private final int row;
     private final int col;
 
+    // one shared instance per square, indexed like Bitboards squares
+    private static final ChessPosition[] SQUARES = new ChessPosition[Bitboards.NUM_SQUARES];
+
+    static {
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            SQUARES[square] = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        }
+    }
+
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Gets the shared position for a square. Positions are immutable, so there is no need
+     * to allocate a new one each time; coordinates off the board still get a fresh instance.
+     *
+     * @param row 1-based row
+     * @param col 1-based column
+     */
+    public static ChessPosition of(int row, int col) {
+        return Bitboards.onBoard(row, col) ? SQUARES[Bitboards.square(row, col)] : new ChessPosition(row, col);
+    }
+
+    static ChessPosition of(int square) {
+        return SQUARES[square];
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -28,7 +50,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return row * 31 + col;
     }
 
 
@@ -0,0 +1,329 @@
+package chess;
+
+/**
+ * Static evaluation of a position for the search.
+ * <p>
+ * Scores are in centipawns from the point of view of the team whose turn it is, so a
+ * positive score means the side to move is ahead. Each term has a middlegame and an
+ * endgame value, and the two are blended by how much material is left, so for example
+ * the king is kept sheltered while queens and rooks are around and walks to the centre
+ * once they are gone.
+ * <p>
+ * Material and piece-square values only change when a piece lands on or leaves a square,
+ * so {@link ChessBoard} keeps their totals up to date as it moves pieces, and only
+ * mobility, king safety and pawn structure are worked out here. Pawn structure depends on
+ * the pawns alone, so a search looks it up in a {@link PawnHashTable} instead of scanning
+ * the pawns at every node.
+ */
+final class Evaluation {
+    // centipawn value of each piece type, indexed by PieceType ordinal; kings are never traded
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    // game phase each piece type is worth; all the pieces of the starting position add up to MAX_PHASE
+    static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+    static final int MAX_PHASE = 24;
+
+    private static final int[] MIDGAME_VALUES = {0, 1025, 365, 337, 477, 82};
+    private static final int[] ENDGAME_VALUES = {0, 936, 297, 281, 512, 94};
+
+    // piece-square tables from white's side, laid out as the board is seen from white (row 8 first)
+    private static final int[] KING_MIDGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] PAWN_MIDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] PAWN_ENDGAME = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    // indexed by PieceType ordinal
+    private static final int[][] MIDGAME_TABLES = {KING_MIDGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_MIDGAME};
+    private static final int[][] ENDGAME_TABLES = {KING_ENDGAME, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_ENDGAME};
+
+    /**
+     * Material plus piece-square value of every piece on every square, indexed
+     * [Bitboards piece index][square]: positive for white pieces, negative for black ones
+     */
+    static final int[][] MIDGAME = new int[Bitboards.NUM_PIECES][Bitboards.NUM_SQUARES];
+    static final int[][] ENDGAME = new int[Bitboards.NUM_PIECES][Bitboards.NUM_SQUARES];
+
+    // per square reached, indexed by PieceType ordinal
+    private static final int[] MOBILITY_MIDGAME = {0, 1, 5, 4, 2, 0};
+    private static final int[] MOBILITY_ENDGAME = {0, 2, 5, 4, 4, 0};
+    // how much an attack on a square next to the king counts, indexed by PieceType ordinal
+    private static final int[] KING_ATTACK_WEIGHTS = {0, 5, 2, 2, 3, 0};
+    private static final int MAX_KING_DANGER = 500;
+    private static final int SHIELD_NEAR = 10;
+    private static final int SHIELD_FAR = 5;
+    // pawn structure, indexed by how many rows the pawn has advanced from its team's back row
+    private static final int[] PASSED_MIDGAME = {0, 5, 10, 15, 25, 45, 70, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 15, 25, 45, 75, 120, 0};
+    private static final int DOUBLED_MIDGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    private static final int BACKWARD_MIDGAME = -8;
+    private static final int BACKWARD_ENDGAME = -10;
+
+    // the files on either side of each column (0-based)
+    private static final long[] ADJACENT_FILES = new long[8];
+    // indexed [TeamColor ordinal][square]: the squares in front of a pawn on its own file,
+    // those squares plus the ones on the files beside it, and the squares beside and behind it
+    private static final long[][] FRONT = new long[2][Bitboards.NUM_SQUARES];
+    private static final long[][] PASSED = new long[2][Bitboards.NUM_SQUARES];
+    private static final long[][] SUPPORT = new long[2][Bitboards.NUM_SQUARES];
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] MOBILE_TYPES = {ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK};
+
+    static {
+        for (int piece = 0; piece < Bitboards.NUM_PIECES; piece++) {
+            int type = piece % 6;
+            boolean white = Bitboards.colorOf(piece) == ChessGame.TeamColor.WHITE;
+            for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+                // the tables list row 8 first, and black reads them upside down
+                int row = square >>> 3;
+                int index = (white ? 7 - row : row) * 8 + (square & 7);
+                int sign = white ? 1 : -1;
+                MIDGAME[piece][square] = sign * (MIDGAME_VALUES[type] + MIDGAME_TABLES[type][index]);
+                ENDGAME[piece][square] = sign * (ENDGAME_VALUES[type] + ENDGAME_TABLES[type][index]);
+            }
+        }
+
+        for (int col = 0; col < 8; col++) {
+            ADJACENT_FILES[col] = (col > 0 ? Bitboards.FILE_A << (col - 1) : 0L)
+                    | (col < 7 ? Bitboards.FILE_A << (col + 1) : 0L);
+        }
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++) {
+            int row = square >>> 3;
+            long file = Bitboards.FILE_A << (square & 7);
+            long adjacent = ADJACENT_FILES[square & 7];
+            // rows above this one, and rows below it
+            long above = row == 7 ? 0L : -1L << (8 * (row + 1));
+            long below = (1L << (8 * row)) - 1;
+            long rowAndBelow = below | Bitboards.RANK_1 << (8 * row);
+            long rowAndAbove = above | Bitboards.RANK_1 << (8 * row);
+            int white = ChessGame.TeamColor.WHITE.ordinal();
+            int black = ChessGame.TeamColor.BLACK.ordinal();
+            FRONT[white][square] = file & above;
+            FRONT[black][square] = file & below;
+            PASSED[white][square] = (file | adjacent) & above;
+            PASSED[black][square] = (file | adjacent) & below;
+            SUPPORT[white][square] = adjacent & rowAndBelow;
+            SUPPORT[black][square] = adjacent & rowAndAbove;
+        }
+    }
+
+    private Evaluation() {}
+
+    static int evaluate(ChessBoard board) {
+        return evaluate(board, null);
+    }
+
+    /**
+     * @param pawns table to look the pawn structure up in, or null to work it out
+     */
+    static int evaluate(ChessBoard board, PawnHashTable pawns) {
+        long structure = pawns == null ? pawnStructure(board) : pawns.probe(board);
+        int midgame = board.midgameScore() + midgame(structure);
+        int endgame = board.endgameScore() + endgame(structure);
+
+        for (var color : COLORS) {
+            int sign = color == ChessGame.TeamColor.WHITE ? 1 : -1;
+            int mobilityMidgame = 0;
+            int mobilityEndgame = 0;
+            int kingDanger = 0;
+
+            long own = board.occupancy(color);
+            int enemyKing = board.kingSquare(Bitboards.opponent(color));
+            long kingZone = enemyKing == Bitboards.NO_PIECE ? 0L : Attacks.KING[enemyKing] | Bitboards.bit(enemyKing);
+            for (var type : MOBILE_TYPES) {
+                int t = type.ordinal();
+                for (long bits = board.pieces(color, type); bits != 0; bits &= bits - 1) {
+                    long attacks = attacks(type, Long.numberOfTrailingZeros(bits), board.occupied());
+                    int reach = Long.bitCount(attacks & ~own);
+                    mobilityMidgame += MOBILITY_MIDGAME[t] * reach;
+                    mobilityEndgame += MOBILITY_ENDGAME[t] * reach;
+                    kingDanger += KING_ATTACK_WEIGHTS[t] * Long.bitCount(attacks & kingZone);
+                }
+            }
+
+            // attacks on the king only count in the middlegame, when there is material to mate with
+            int danger = Math.min(kingDanger * kingDanger / 2, MAX_KING_DANGER);
+            midgame += sign * (mobilityMidgame + danger + pawnShield(board, color));
+            endgame += sign * mobilityEndgame;
+        }
+
+        int phase = Math.min(board.phase(), MAX_PHASE);
+        int score = (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return board.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    /**
+     * @return centipawn value of a piece index, used to order captures
+     */
+    static int value(int piece) {
+        return PIECE_VALUES[piece % 6];
+    }
+
+    /**
+     * Scores passed, doubled, isolated and backward pawns, white minus black
+     *
+     * @return the middlegame score in the high 32 bits and the endgame score in the low 32
+     */
+    static long pawnStructure(ChessBoard board) {
+        int midgame = 0;
+        int endgame = 0;
+        for (var color : COLORS) {
+            int us = color.ordinal();
+            int sign = color == ChessGame.TeamColor.WHITE ? 1 : -1;
+            long own = board.pieces(color, ChessPiece.PieceType.PAWN);
+            long enemy = board.pieces(Bitboards.opponent(color), ChessPiece.PieceType.PAWN);
+            for (long bits = own; bits != 0; bits &= bits - 1) {
+                int square = Long.numberOfTrailingZeros(bits);
+                boolean doubled = (own & FRONT[us][square]) != 0;
+                boolean isolated = (own & ADJACENT_FILES[square & 7]) == 0;
+                int structureMidgame = 0;
+                int structureEndgame = 0;
+                if (doubled) {
+                    structureMidgame += DOUBLED_MIDGAME;
+                    structureEndgame += DOUBLED_ENDGAME;
+                } else if ((enemy & PASSED[us][square]) == 0) {
+                    int advanced = sign > 0 ? square >>> 3 : 7 - (square >>> 3);
+                    structureMidgame += PASSED_MIDGAME[advanced];
+                    structureEndgame += PASSED_ENDGAME[advanced];
+                }
+                if (isolated) {
+                    structureMidgame += ISOLATED_MIDGAME;
+                    structureEndgame += ISOLATED_ENDGAME;
+                } else if ((own & SUPPORT[us][square]) == 0) {
+                    // no pawn beside or behind can come up to defend it, and an enemy pawn holds
+                    // the square in front
+                    int stop = square + 8 * sign;
+                    if (stop >= 0 && stop < Bitboards.NUM_SQUARES && (Attacks.PAWN[us][stop] & enemy) != 0) {
+                        structureMidgame += BACKWARD_MIDGAME;
+                        structureEndgame += BACKWARD_ENDGAME;
+                    }
+                }
+                midgame += sign * structureMidgame;
+                endgame += sign * structureEndgame;
+            }
+        }
+        return ((long) midgame << 32) | (endgame & 0xFFFFFFFFL);
+    }
+
+    private static int midgame(long structure) {
+        return (int) (structure >> 32);
+    }
+
+    private static int endgame(long structure) {
+        return (int) structure;
+    }
+
+    /**
+     * Bonus for the team's own pawns on the two rows in front of its king, on its file and
+     * the ones beside it
+     */
+    private static int pawnShield(ChessBoard board, ChessGame.TeamColor color) {
+        int king = board.kingSquare(color);
+        if (king == Bitboards.NO_PIECE) {
+            return 0;
+        }
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        int forward = color == ChessGame.TeamColor.WHITE ? 1 : -1;
+        int row = Bitboards.row(king);
+        int col = Bitboards.column(king);
+        int shield = 0;
+        for (int c = col - 1; c <= col + 1; c++) {
+            if (Bitboards.onBoard(row + forward, c) && (pawns & Bitboards.bit(Bitboards.square(row + forward, c))) != 0) {
+                shield += SHIELD_NEAR;
+            } else if (Bitboards.onBoard(row + 2 * forward, c)
+                    && (pawns & Bitboards.bit(Bitboards.square(row + 2 * forward, c))) != 0) {
+                shield += SHIELD_FAR;
+            }
+        }
+        return shield;
+    }
+
+    private static long attacks(ChessPiece.PieceType type, int square, long occupied) {
+        return switch (type) {
+            case QUEEN -> Attacks.queen(square, occupied);
+            case BISHOP -> Attacks.bishop(square, occupied);
+            case KNIGHT -> Attacks.KNIGHT[square];
+            case ROOK -> Attacks.rook(square, occupied);
+            default -> 0L;
+        };
+    }
+}
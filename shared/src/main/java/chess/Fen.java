@@ -0,0 +1,163 @@
+package chess;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation.
+ * <p>
+ * A FEN record has six fields: the pieces row by row from row 8, the side to move, castling
+ * rights, the en passant square, the halfmove clock and the move number. This game has no
+ * castling or en passant, so those two fields are checked for form and then ignored, and
+ * always written as {@code -}. The clocks may be left off, as many tools do.
+ * <p>
+ * The parser walks the characters of the {@link CharSequence} it is given without cutting it
+ * into strings, and the writer appends to a {@link StringBuilder} the caller supplies, so
+ * neither makes garbage beyond the game itself.
+ */
+final class Fen {
+    private Fen() {}
+
+    static ChessGame parse(CharSequence fen) {
+        var board = new ChessBoard();
+        int length = fen.length();
+        int i = 0;
+
+        int row = 8;
+        int col = 1;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw error(fen, i, "row " + row + " does not have 8 squares");
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                var piece = ChessPiece.parseFromString(c);
+                if (piece == null) {
+                    throw error(fen, i, "'" + c + "' is not a piece");
+                }
+                if (col > 8) {
+                    throw error(fen, i, "row " + row + " has more than 8 squares");
+                }
+                board.addPiece(ChessPosition.of(row, col++), piece);
+            }
+            if (col > 9) {
+                throw error(fen, i, "row " + row + " has more than 8 squares");
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw error(fen, i, "the board does not have 8 rows of 8 squares");
+        }
+
+        i = skipSpace(fen, i);
+        if (i >= length || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw error(fen, i, "expected w or b to move");
+        }
+        board.setTeamTurn(fen.charAt(i) == 'w' ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+        i++;
+
+        // castling rights: '-' or letters naming the rooks (KQkq, or files for Chess960)
+        i = skipSpace(fen, i);
+        int start = i;
+        while (i < length && fen.charAt(i) != ' ') {
+            char c = fen.charAt(i);
+            if (!(c == '-' && i == start) && "KQkqABCDEFGHabcdefgh".indexOf(c) < 0) {
+                throw error(fen, i, "'" + c + "' is not a castling right");
+            }
+            i++;
+        }
+        if (i == start) {
+            throw error(fen, i, "missing castling rights");
+        }
+
+        // en passant square: '-' or a square on row 3 or 6
+        i = skipSpace(fen, i);
+        if (i < length && fen.charAt(i) == '-') {
+            i++;
+        } else if (i + 1 < length && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h'
+                && (fen.charAt(i + 1) == '3' || fen.charAt(i + 1) == '6')) {
+            i += 2;
+        } else {
+            throw error(fen, i, "expected an en passant square or -");
+        }
+
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        i = skipSpace(fen, i);
+        if (i < length) {
+            int end = digitsEnd(fen, i);
+            halfmoveClock = number(fen, i, end);
+            i = skipSpace(fen, end);
+            end = digitsEnd(fen, i);
+            fullmoveNumber = Math.max(1, number(fen, i, end));
+            i = skipSpace(fen, end);
+        }
+        if (i < length) {
+            throw error(fen, i, "unexpected text after the move number");
+        }
+
+        var game = new ChessGame(board);
+        game.setClocks(halfmoveClock, fullmoveNumber);
+        return game;
+    }
+
+    static StringBuilder write(ChessGame game, StringBuilder out) {
+        var board = game.getBoard();
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                int piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == Bitboards.NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                out.append(ChessPiece.PIECE_CHARS[piece]);
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                out.append('/');
+            }
+        }
+        return out.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w" : " b")
+                .append(" - - ")
+                .append(game.getHalfmoveClock())
+                .append(' ')
+                .append(game.getFullmoveNumber());
+    }
+
+    private static int skipSpace(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int digitsEnd(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) >= '0' && fen.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int number(CharSequence fen, int start, int end) {
+        if (start == end || end - start > 6) {
+            throw error(fen, start, "expected a move count");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (fen.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException error(CharSequence fen, int index, String problem) {
+        return new IllegalArgumentException("Bad FEN at " + index + ", " + problem + ": " + fen);
+    }
+}
@@ -0,0 +1,79 @@
+package chess;
+
+/**
+ * Moves packed into the low 16 bits of an int, so move generation doesn't allocate.
+ * <pre>
+ * bits 0-5   start square
+ * bits 6-11  end square
+ * bits 12-14 promotion piece (PieceType ordinal + 1), 0 for none
+ * bit  15    capture flag
+ * </pre>
+ * {@link ChessMove} is only built from these at the public API.
+ */
+public final class Move {
+    public static final int NONE = 0;
+    public static final int CAPTURE = 1 << 15;
+
+    private static final int SQUARES_MASK = 0xFFF;
+    private static final int MOVE_MASK = 0x7FFF;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Move() {}
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, boolean capture) {
+        return from | to << 6 | (promotion == null ? 0 : promotion.ordinal() + 1) << 12 | (capture ? CAPTURE : 0);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int code = (move >>> 12) & 0x7;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & 0x7000) != 0;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return True if two moves go between the same squares with the same promotion, ignoring flags
+     */
+    public static boolean sameMove(int a, int b) {
+        return ((a ^ b) & MOVE_MASK) == 0;
+    }
+
+    /**
+     * @return the start and end squares only, a 12 bit index usable for history tables
+     */
+    public static int squares(int move) {
+        return move & SQUARES_MASK;
+    }
+
+    public static String toString(int move) {
+        var builder = new StringBuilder(5);
+        appendSquare(builder, from(move));
+        appendSquare(builder, to(move));
+        var promotion = promotion(move);
+        if (promotion != null) {
+            builder.append(Character.toLowerCase(ChessPiece.PIECE_CHARS[promotion.ordinal()]));
+        }
+        return builder.toString();
+    }
+
+    private static void appendSquare(StringBuilder builder, int square) {
+        builder.append((char) ('a' + (square & 7))).append((char) ('1' + (square >>> 3)));
+    }
+}
@@ -0,0 +1,120 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of legal move lists, shared between games.
+ * <p>
+ * The legal moves of a team depend only on where the pieces stand, so every game that
+ * reaches a position (most often in the opening) can reuse the moves the first one
+ * generated. Entries are keyed by the board's Zobrist placement key combined with the team
+ * to move, and the occupancy bitboard is stored alongside as a second check against key
+ * collisions.
+ * <p>
+ * Each key maps to one slot of a power-of-two array and a new entry simply replaces
+ * whatever was in its slot, so the cache never grows past its capacity and needs no locks:
+ * entries are immutable and slots are swapped atomically. Cached move arrays are shared and
+ * must never be modified.
+ */
+public final class MoveCache {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final MoveCache SHARED = new MoveCache(DEFAULT_CAPACITY);
+
+    private record Entry(long key, long occupied, int[] moves) {}
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity maximum number of positions to keep, rounded up to a power of two
+     */
+    public MoveCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the cache every {@link ChessGame} uses unless given another
+     */
+    public static MoveCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Looks up a team's legal moves on a board
+     *
+     * @return the packed moves (see {@link Move}), or null if the position is not cached
+     */
+    int[] get(ChessBoard board, ChessGame.TeamColor color) {
+        long key = key(board, color);
+        Entry entry = slots.get(index(key));
+        if (entry != null && entry.key == key && entry.occupied == board.occupied()) {
+            hits.increment();
+            return entry.moves;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a team's legal moves on a board, replacing whatever shared its slot
+     *
+     * @return the stored moves
+     */
+    int[] put(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        long key = key(board, color);
+        int[] packed = moves.toArray();
+        slots.set(index(key), new Entry(key, board.occupied(), packed));
+        return packed;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of positions the cache can hold
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Drops every entry and resets the counters
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "MoveCache{capacity=" + capacity() + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+    }
+
+    private static long key(ChessBoard board, ChessGame.TeamColor color) {
+        // the moves belong to the team asked about, which need not be the one whose turn it is
+        return board.placementKey() ^ Zobrist.side(color);
+    }
+
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,144 @@
+package chess;
+
+/**
+ * Generates strictly legal moves without playing them out.
+ * <p>
+ * {@link ChessPiece#pieceMoves} produces pseudo-legal moves, which then have to be played
+ * and tested for check one at a time. Here the king's situation is worked out once up
+ * front instead: the pieces giving check restrict every other piece to capturing the
+ * checker or blocking its line, pinned pieces are restricted to the line between their
+ * king and the pinning piece, and the king only steps onto squares the other team does not
+ * attack once the king itself is out of the way.
+ */
+final class MoveGenerator {
+
+    private MoveGenerator() {}
+
+    /**
+     * Adds every legal move of a team's pieces that stand on the given squares
+     *
+     * @param board game board
+     * @param color team to generate moves for
+     * @param from  bitboard of the squares whose pieces should be moved
+     * @param moves list to add the moves to
+     */
+    static void legalMoves(ChessBoard board, ChessGame.TeamColor color, long from, MoveList moves) {
+        long kings = board.pieces(color, ChessPiece.PieceType.KING);
+        if (Long.bitCount(kings) > 1) {
+            // which king counts is ambiguous, so fall back to trying every move
+            simulatedMoves(board, color, from, moves);
+            return;
+        }
+
+        ChessGame.TeamColor them = Bitboards.opponent(color);
+        long own = board.occupancy(color);
+        long occupied = board.occupied();
+        from &= own;
+
+        if (kings == 0) {
+            // nothing can be left in check, so every pseudo-legal move stands
+            addPieceMoves(board, color, from, ~0L, 0L, Bitboards.NO_PIECE, moves);
+            return;
+        }
+
+        int king = Long.numberOfTrailingZeros(kings);
+        long checkers = board.attackersOf(king, them, occupied);
+
+        if ((from & kings) != 0) {
+            // take the king off the board so a slider checking it also covers the squares behind it
+            long withoutKing = occupied ^ kings;
+            long targets = ChessPiece.targets(board, king, color, ChessPiece.PieceType.KING);
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (board.attackersOf(to, them, withoutKing) == 0) {
+                    moves.add(Move.encode(king, to, null, (occupied & Bitboards.bit(to)) != 0));
+                }
+            }
+        }
+
+        if (Long.bitCount(checkers) > 1) {
+            return; // only the king can answer a double check
+        }
+
+        // with one checker every other piece must capture it or step in between
+        long evasions = checkers == 0 ? ~0L : checkers | Attacks.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        addPieceMoves(board, color, from & ~kings, evasions, pinned(board, color, king), king, moves);
+    }
+
+    /**
+     * @return bitboard of the team's pieces that are the only thing between their king and
+     * an enemy rook, bishop or queen on the same line
+     */
+    private static long pinned(ChessBoard board, ChessGame.TeamColor color, int king) {
+        ChessGame.TeamColor them = Bitboards.opponent(color);
+        long queens = board.pieces(them, ChessPiece.PieceType.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (board.pieces(them, ChessPiece.PieceType.ROOK) | queens))
+                | (Attacks.bishop(king, 0L) & (board.pieces(them, ChessPiece.PieceType.BISHOP) | queens));
+
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.BETWEEN[king][Long.numberOfTrailingZeros(snipers)] & board.occupied();
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.occupancy(color);
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * Adds the moves of every non-king piece on the given squares that land inside the target mask,
+     * keeping pinned pieces on the line through their king
+     */
+    private static void addPieceMoves(ChessBoard board, ChessGame.TeamColor color, long from, long allowed, long pinned,
+                                      int king, MoveList moves) {
+        for (; from != 0; from &= from - 1) {
+            int square = Long.numberOfTrailingZeros(from);
+            ChessPiece.PieceType type = Bitboards.typeOf(board.pieceAt(square));
+            long targets = ChessPiece.targets(board, square, color, type) & allowed;
+            if ((pinned & Bitboards.bit(square)) != 0) {
+                targets &= Attacks.LINE[king][square];
+            }
+
+            boolean promotes = type == ChessPiece.PieceType.PAWN;
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                long bit = Bitboards.bit(to);
+                boolean capture = (board.occupied() & bit) != 0;
+                if (promotes && (bit & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+                    for (ChessPiece.PieceType promotion : ChessPiece.PROMOTIONS) {
+                        moves.add(Move.encode(square, to, promotion, capture));
+                    }
+                } else {
+                    moves.add(Move.encode(square, to, null, capture));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every pseudo-legal move of a team's pieces on the given squares, including ones
+     * that leave the team in check
+     */
+    static void pseudoLegalMoves(ChessBoard board, ChessGame.TeamColor color, long from, MoveList moves) {
+        addPieceMoves(board, color, from & board.occupancy(color), ~0L, 0L, Bitboards.NO_PIECE, moves);
+    }
+
+    /**
+     * The old approach: generate pseudo-legal moves, play each one and keep it if the
+     * team is not left in check
+     */
+    static void simulatedMoves(ChessBoard board, ChessGame.TeamColor color, long from, MoveList moves) {
+        int start = moves.size();
+        pseudoLegalMoves(board, color, from, moves);
+        int end = moves.size();
+        for (int i = start; i < end; i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            if (!board.isInCheck(color)) {
+                moves.set(start++, move);
+            }
+            board.unmakeMove();
+        }
+        moves.truncate(start); // drop the moves that were filtered out
+    }
+}
@@ -0,0 +1,105 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A reusable, growable buffer of packed moves (see {@link Move}).
+ * <p>
+ * Callers that generate moves repeatedly, such as perft or search, keep one list per ply
+ * and {@link #clear()} it instead of allocating a new collection for every position.
+ */
+public final class MoveList {
+    // no legal chess position has more than 218 moves
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveList(int capacity) {
+        this.moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops moves from the end of the list until it holds {@code size} moves
+     */
+    public void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * @return True if the list holds the same move, ignoring flags
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (Move.sameMove(moves[i], move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a copy of the moves in the list
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(moves, size);
+    }
+
+    /**
+     * Converts every move to a {@link ChessMove} and adds it to a collection
+     *
+     * @param out collection to add the moves to
+     */
+    public void collect(Collection<? super ChessMove> out) {
+        for (int i = 0; i < size; i++) {
+            out.add(ChessMove.fromPacked(moves[i]));
+        }
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("MoveList[");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(Move.toString(moves[i]));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,82 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A small fixed-size cache of pawn structure scores, keyed by {@link ChessBoard}'s pawn key.
+ * <p>
+ * Passed, isolated, doubled and backward pawns depend on nothing but where the pawns stand,
+ * and pawns move far less often than the other pieces, so most positions a search evaluates
+ * share their pawn structure with one it has already scored. Each key maps to one slot and a
+ * new entry replaces whatever was there.
+ * <p>
+ * A table is not thread-safe; each search thread keeps its own.
+ */
+final class PawnHashTable {
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final long[] keys;
+    private final long[] scores;
+    private final boolean[] used;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    PawnHashTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of pawn structures to keep, rounded up to a power of two
+     */
+    PawnHashTable(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^24: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.keys = new long[size];
+        this.scores = new long[size];
+        this.used = new boolean[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the pawn structure score of the board, packed as described in
+     * {@link Evaluation#pawnStructure}, from the table or worked out and stored
+     */
+    long probe(ChessBoard board) {
+        long key = board.pawnKey();
+        int index = (int) (key ^ (key >>> 32)) & mask;
+        if (used[index] && keys[index] == key) {
+            hits++;
+            return scores[index];
+        }
+        misses++;
+        long score = Evaluation.pawnStructure(board);
+        keys[index] = key;
+        scores[index] = score;
+        used[index] = true;
+        return score;
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        hits = 0;
+        misses = 0;
+    }
+}
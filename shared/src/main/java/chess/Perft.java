@@ -0,0 +1,223 @@
+package chess;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft ("performance test") counts the leaf nodes of the legal move tree to a fixed depth.
+ * <p>
+ * The counts for a position are fixed by the rules, so comparing them against known values
+ * catches move generation bugs that only show up several moves deep, and timing the walk
+ * measures how fast moves are generated, played and taken back. The walk uses the game's
+ * {@link ChessGame.MoveGeneration} setting and works on a copy of its board.
+ * <p>
+ * The parallel variants hand subtrees to a {@link ForkJoinPool}: every root move, and every
+ * move below it while enough depth remains, becomes a task with its own copy of the board,
+ * so idle workers steal whole subtrees instead of sharing any state. Near the leaves the
+ * subtrees are too small to be worth a task and are walked sequentially.
+ * <p>
+ * Run {@link #main} for a quick benchmark from the starting position.
+ */
+public final class Perft {
+    // subtrees this shallow are counted by the task that reaches them rather than split further
+    private static final int SEQUENTIAL_DEPTH = 3;
+
+    /**
+     * @param nodes leaf nodes counted
+     * @param nanos time taken in nanoseconds
+     */
+    public record Result(long nodes, long nanos) {
+        public double nodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d nodes in %.3f s (%.0f nodes/s)", nodes, nanos / 1e9, nodesPerSecond());
+        }
+    }
+
+    private final ChessGame game;
+    private final ChessBoard board;
+    // one move list per ply so nothing is allocated during the walk
+    private final MoveList[] lists;
+
+    private Perft(ChessGame game, int depth) {
+        this(game, new ChessBoard(game.getBoard()), depth);
+    }
+
+    private Perft(ChessGame game, ChessBoard board, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: " + depth);
+        }
+        this.game = game;
+        this.board = board;
+        this.lists = new MoveList[Math.max(depth, 1)];
+        for (int ply = 0; ply < lists.length; ply++) {
+            lists[ply] = new MoveList();
+        }
+    }
+
+    /**
+     * Counts the positions reached after every sequence of legal moves of the given length
+     *
+     * @param game  game whose position and turn to start from; it is not changed
+     * @param depth number of moves (plies) to play
+     * @return the number of leaf positions, 1 at depth 0
+     */
+    public static long count(ChessGame game, int depth) {
+        return new Perft(game, depth).count(depth, 0);
+    }
+
+    /**
+     * Times {@link #count}
+     */
+    public static Result run(ChessGame game, int depth) {
+        var perft = new Perft(game, depth);
+        long start = System.nanoTime();
+        long nodes = perft.count(depth, 0);
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Same as {@link #count}, but spread over the common fork/join pool
+     */
+    public static long countParallel(ChessGame game, int depth) {
+        return countParallel(game, depth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #count}, but spread over the given pool
+     *
+     * @param pool pool to run the subtree tasks in
+     */
+    public static long countParallel(ChessGame game, int depth, ForkJoinPool pool) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: " + depth);
+        }
+        return pool.invoke(new SubtreeTask(game, new ChessBoard(game.getBoard()), depth));
+    }
+
+    /**
+     * Times {@link #countParallel(ChessGame, int, ForkJoinPool)}
+     */
+    public static Result runParallel(ChessGame game, int depth, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        long nodes = countParallel(game, depth, pool);
+        return new Result(nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Splits the count by first move, the usual way to narrow down which move a wrong
+     * total comes from
+     *
+     * @param game  game whose position and turn to start from; it is not changed
+     * @param depth number of moves (plies) to play, at least 1
+     * @return leaf count below each legal move, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Divide needs a depth of at least 1: " + depth);
+        }
+        var perft = new Perft(game, depth);
+        var moves = perft.generate(0);
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            perft.board.makeMove(move);
+            counts.put(ChessMove.fromPacked(move), perft.count(depth - 1, 1));
+            perft.board.unmakeMove();
+        }
+        return counts;
+    }
+
+    private long count(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        var moves = generate(ply);
+        if (depth == 1) {
+            return moves.size(); // every legal move is a leaf, no need to play them
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += count(depth - 1, ply + 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private MoveList generate(int ply) {
+        var moves = lists[ply];
+        moves.clear();
+        game.generateMoves(board, board.getTeamTurn(), ~0L, moves);
+        return moves;
+    }
+
+    /**
+     * Counts one subtree, forking a task per move while the subtree is deep enough
+     */
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        // tasks are never serialized; ForkJoinTask just happens to be Serializable
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient ChessGame game;
+        private final transient ChessBoard board;
+        private final int depth;
+
+        SubtreeTask(ChessGame game, ChessBoard board, int depth) {
+            this.game = game;
+            this.board = board;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SEQUENTIAL_DEPTH) {
+                return new Perft(game, board, depth).count(depth, 0);
+            }
+            var moves = new MoveList();
+            game.generateMoves(board, board.getTeamTurn(), ~0L, moves);
+
+            var tasks = new ArrayList<SubtreeTask>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                // each child gets its own board so tasks never touch each other's state
+                var child = new ChessBoard(board);
+                child.makeMove(moves.get(i));
+                tasks.add(new SubtreeTask(game, child, depth - 1));
+            }
+            long nodes = 0;
+            for (var task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Prints perft results from the starting position for each depth up to the one given
+     * (default 5). A second argument picks the move generation (legal or simulate) and a
+     * third, if present, is the number of threads to count with in parallel.
+     */
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        var game = new ChessGame();
+        if (args.length > 1) {
+            game.setMoveGeneration(ChessGame.MoveGeneration.valueOf(args[1].toUpperCase()));
+        }
+        ForkJoinPool pool = args.length > 2 ? new ForkJoinPool(Integer.parseInt(args[2])) : null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            var result = pool == null ? run(game, depth) : runParallel(game, depth, pool);
+            System.out.println("perft(" + depth + "): " + result);
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package chess;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads games out of a PGN file one at a time, so a file of any size can be streamed.
+ * <p>
+ * Only the moves of the main line, the result and the starting position are kept. Tags
+ * other than Result, SetUp and FEN, comments, variations, numeric annotations and move
+ * numbers are skipped.
+ */
+final class PgnReader {
+    /**
+     * @param moves  the main line in SAN
+     * @param result "1-0", "0-1", "1/2-1/2" or "*"
+     * @param fen    the position the game starts from when its tags set one up, otherwise
+     *               null for the standard start; empty if SetUp is given without a FEN tag
+     */
+    record Game(List<String> moves, String result, String fen) {}
+
+    private final PushbackReader in;
+
+    PgnReader(Reader in) {
+        this.in = new PushbackReader(in);
+    }
+
+    /**
+     * @return the next game, or null at the end of the input
+     */
+    Game next() throws IOException {
+        var moves = new ArrayList<String>();
+        String result = null;
+        String fen = null;
+        boolean setUp = false;
+        boolean started = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            switch (c) {
+                case '[' -> {
+                    if (!moves.isEmpty()) {
+                        // a game without a termination marker: this tag starts the next one
+                        in.unread('[');
+                        return game(moves, result, setUp, fen);
+                    }
+                    String tag = readUntil(']');
+                    started = true;
+                    if (tag.startsWith("Result ")) {
+                        result = tagValue(tag);
+                    } else if (tag.startsWith("FEN ")) {
+                        fen = tagValue(tag);
+                    } else if (tag.startsWith("SetUp ")) {
+                        setUp = "1".equals(tagValue(tag));
+                    }
+                }
+                case '{' -> readUntil('}');
+                case ';' -> readUntil('\n');
+                case '(' -> skipVariation();
+                case '$' -> readToken();
+                case ')', '}' -> {} // stray closers, skipped
+                default -> {
+                    if (Character.isWhitespace(c)) {
+                        continue;
+                    }
+                    in.unread(c);
+                    String token = readToken();
+                    if (isResult(token)) {
+                        return game(moves, token, setUp, fen);
+                    }
+                    // drop move numbers such as "12." and "12...", which may be glued to the move
+                    int i = 0;
+                    while (i < token.length() && (Character.isDigit(token.charAt(i)) || token.charAt(i) == '.')) {
+                        i++;
+                    }
+                    if (i < token.length()) {
+                        moves.add(token.substring(i));
+                        started = true;
+                    }
+                }
+            }
+        }
+        return started ? game(moves, result, setUp, fen) : null;
+    }
+
+    private static Game game(List<String> moves, String result, boolean setUp, String fen) {
+        // a FEN tag is meant to come with SetUp "1", but it moves the start either way
+        return new Game(moves, result == null ? "*" : result, fen == null && setUp ? "" : fen);
+    }
+
+    /**
+     * @return the quoted value of a tag, or null if it has none
+     */
+    private static String tagValue(String tag) {
+        int open = tag.indexOf('"');
+        int close = tag.lastIndexOf('"');
+        return open >= 0 && close > open ? tag.substring(open + 1, close) : null;
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    private String readUntil(char end) throws IOException {
+        var text = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != end) {
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    private String readToken() throws IOException {
+        var token = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (Character.isWhitespace(c) || "{}();[".indexOf(c) >= 0) {
+                in.unread(c);
+                break;
+            }
+            token.append((char) c);
+        }
+        return token.toString();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = in.read()) != -1) {
+            switch (c) {
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> readUntil('}');
+                default -> {}
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An opening book in the Polyglot {@code .bin} format, read straight from a memory-mapped file.
+ * <p>
+ * The file is a sorted array of 16-byte big-endian entries: the position's Zobrist key, a
+ * move, a weight and four bytes of learning data that are ignored here. Every move for a
+ * position sits next to the others, so a lookup is a binary search for the first entry with
+ * the key followed by a short scan. Nothing is read at startup and nothing is copied onto the
+ * heap; the operating system pages in the few parts of the file a lookup touches, so a book
+ * of hundreds of megabytes costs no more heap than a small one.
+ * <p>
+ * Positions are keyed by {@link #polyglotKey}, so books made by other Polyglot tools and by
+ * {@link BookBuilder} both work. Moves that are not legal in this game (castling, which books
+ * write as the king taking its own rook, or a move after a key collision) are skipped.
+ */
+public final class PolyglotBook {
+    static final int ENTRY_BYTES = 16;
+
+    // a single mapping can't be larger than 2 GB, so big books are mapped in pieces of whole entries
+    private static final long ENTRIES_PER_SEGMENT = 1L << 26;
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    /**
+     * A move the book suggests
+     *
+     * @param move   the move
+     * @param weight how strongly the book recommends it relative to the other moves of the position
+     */
+    public record BookMove(ChessMove move, int weight) {}
+
+    private final MappedByteBuffer[] segments;
+    private final long entries;
+
+    private PolyglotBook(MappedByteBuffer[] segments, long entries) {
+        this.segments = segments;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps a book file into memory
+     *
+     * @throws IOException if the file can't be read or isn't a whole number of entries long
+     */
+    public static PolyglotBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_BYTES != 0) {
+                throw new IOException("Not a Polyglot book, size is not a multiple of " + ENTRY_BYTES + ": " + path);
+            }
+            long entries = size / ENTRY_BYTES;
+            var segments = new MappedByteBuffer[(int) ((entries + ENTRIES_PER_SEGMENT - 1) / ENTRIES_PER_SEGMENT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * ENTRIES_PER_SEGMENT * ENTRY_BYTES;
+                // the mapping stays valid after the channel is closed
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(ENTRIES_PER_SEGMENT * ENTRY_BYTES, size - start));
+                segments[i].order(ByteOrder.BIG_ENDIAN);
+            }
+            return new PolyglotBook(segments, entries);
+        }
+    }
+
+    /**
+     * Gets the position's key the way Polyglot books store it. This game tracks neither
+     * castling rights nor en passant squares, so castling rights are taken to remain wherever
+     * the king and rook are still on their starting squares, and no en passant key is added.
+     * Otherwise this is {@link ChessGame#getZobristKey()}, which already uses Polyglot's numbers.
+     *
+     * @return the Polyglot key of the game's position
+     */
+    public static long polyglotKey(ChessGame game) {
+        return game.getZobristKey() ^ Zobrist.castling(game.getBoard());
+    }
+
+    /**
+     * @return the legal book moves for the side to move, most recommended first, or an empty
+     * list if the position is not in the book
+     */
+    public List<BookMove> lookup(ChessGame game) {
+        long key = polyglotKey(game);
+        long index = firstIndex(key);
+        if (index == entries) {
+            return List.of();
+        }
+        var legal = game.allValidMoves(game.getTeamTurn(), game.getBoard());
+        var moves = new ArrayList<BookMove>();
+        for (; index < entries && keyAt(index) == key; index++) {
+            var move = decodeMove(shortAt(index, 8));
+            if (move != null && legal.contains(move)) {
+                moves.add(new BookMove(move, shortAt(index, 10)));
+            }
+        }
+        moves.sort(Comparator.comparingInt(BookMove::weight).reversed());
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * @return the legal book moves for the side to move, most recommended first
+     */
+    public List<ChessMove> getMoves(ChessGame game) {
+        var moves = new ArrayList<ChessMove>();
+        for (var bookMove : lookup(game)) {
+            moves.add(bookMove.move());
+        }
+        return moves;
+    }
+
+    /**
+     * @return number of entries in the book
+     */
+    public long size() {
+        return entries;
+    }
+
+    /**
+     * Encodes a move the Polyglot way: to file, to row, from file and from row in three bits
+     * each from the bottom up, then the promotion piece
+     */
+    static int encodeMove(ChessMove move) {
+        var start = move.getStartPosition();
+        var end = move.getEndPosition();
+        int promotion = 0;
+        if (move.getPromotionPiece() != null) {
+            promotion = switch (move.getPromotionPiece()) {
+                case KNIGHT -> 1;
+                case BISHOP -> 2;
+                case ROOK -> 3;
+                case QUEEN -> 4;
+                default -> throw new IllegalArgumentException("Can't promote to " + move.getPromotionPiece());
+            };
+        }
+        return (end.getColumn() - 1)
+                | (end.getRow() - 1) << 3
+                | (start.getColumn() - 1) << 6
+                | (start.getRow() - 1) << 9
+                | promotion << 12;
+    }
+
+    /**
+     * @return the move, or null if the promotion bits are not a piece
+     */
+    static ChessMove decodeMove(int raw) {
+        int promotion = raw >>> 12 & 7;
+        if (promotion >= PROMOTIONS.length) {
+            return null;
+        }
+        return new ChessMove(ChessPosition.of((raw >>> 9 & 7) + 1, (raw >>> 6 & 7) + 1),
+                ChessPosition.of((raw >>> 3 & 7) + 1, (raw & 7) + 1), PROMOTIONS[promotion]);
+    }
+
+    /**
+     * @return index of the first entry whose key is at least {@code key}, comparing keys as
+     * unsigned numbers the way the file is sorted
+     */
+    private long firstIndex(long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(long index) {
+        return segments[(int) (index / ENTRIES_PER_SEGMENT)].getLong(offset(index));
+    }
+
+    private int shortAt(long index, int field) {
+        return Short.toUnsignedInt(segments[(int) (index / ENTRIES_PER_SEGMENT)].getShort(offset(index) + field));
+    }
+
+    private static int offset(long index) {
+        return (int) (index % ENTRIES_PER_SEGMENT) * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,129 @@
+package chess;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A compact binary form of a position, for storing games and sending them over the wire.
+ * <p>
+ * The layout, always big-endian whatever the buffer's byte order:
+ * <pre>
+ *   byte    version, {@link #VERSION}
+ *   byte    flags: bit 0 set when black is to move, the rest reserved and zero
+ *   short   halfmove clock, unsigned
+ *   short   fullmove number, unsigned
+ *   long    occupancy, bit n set when square n holds a piece
+ *   nibbles one per occupied square from square 0 up, the low nibble of each byte first,
+ *           holding the piece index (color * 6 + type); an odd count pads with a zero nibble
+ * </pre>
+ * That is 14 bytes plus one for every two pieces: 30 for the starting position, which is
+ * the most a game played from it can take, and 46 for a board set up with every square
+ * filled. Castling rights and the en passant square don't exist in this game, so there is
+ * nothing else to store.
+ * <p>
+ * Neither direction makes objects besides the decoded game itself; pieces and squares come
+ * from the shared tables in {@link ChessPiece} and {@link ChessPosition}.
+ */
+public final class PositionCodec {
+    /**
+     * Format version written in the first byte; decoding anything else fails
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Most bytes a position can take, with a piece on every square; enough for a buffer to
+     * encode any position into
+     */
+    public static final int MAX_BYTES = 14 + Bitboards.NUM_SQUARES / 2;
+
+    private static final int BLACK_TO_MOVE = 1;
+
+    private PositionCodec() {}
+
+    /**
+     * @return the number of bytes {@link #encode} writes for the game
+     */
+    public static int encodedSize(ChessGame game) {
+        return 14 + (Long.bitCount(game.getBoard().occupied()) + 1) / 2;
+    }
+
+    /**
+     * Writes the game's position at the buffer's position and moves past it
+     *
+     * @throws java.nio.BufferOverflowException if the buffer doesn't have room left
+     */
+    public static void encode(ChessGame game, ByteBuffer out) {
+        var board = game.getBoard();
+        long occupied = board.occupied();
+        out.put((byte) VERSION);
+        out.put((byte) (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0));
+        boolean swap = out.order() != ByteOrder.BIG_ENDIAN;
+        short halfmoveClock = (short) Math.min(game.getHalfmoveClock(), 0xFFFF);
+        short fullmoveNumber = (short) Math.min(game.getFullmoveNumber(), 0xFFFF);
+        out.putShort(swap ? Short.reverseBytes(halfmoveClock) : halfmoveClock);
+        out.putShort(swap ? Short.reverseBytes(fullmoveNumber) : fullmoveNumber);
+        out.putLong(swap ? Long.reverseBytes(occupied) : occupied);
+
+        int packed = 0;
+        boolean high = false;
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            int piece = board.pieceAt(Long.numberOfTrailingZeros(squares));
+            if (high) {
+                out.put((byte) (packed | piece << 4));
+            } else {
+                packed = piece;
+            }
+            high = !high;
+        }
+        if (high) {
+            out.put((byte) packed);
+        }
+    }
+
+    /**
+     * Reads a position written by {@link #encode} at the buffer's position and moves past it
+     *
+     * @throws IllegalArgumentException          if the bytes are of another version or not a
+     *                                           position
+     * @throws java.nio.BufferUnderflowException if the buffer ends part way through
+     */
+    public static ChessGame decode(ByteBuffer in) {
+        int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown position format version " + version);
+        }
+        int flags = in.get() & 0xFF;
+        if ((flags & ~BLACK_TO_MOVE) != 0) {
+            throw new IllegalArgumentException("Unknown position flags " + flags);
+        }
+        boolean swap = in.order() != ByteOrder.BIG_ENDIAN;
+        short halfmoveClock = in.getShort();
+        short fullmoveNumber = in.getShort();
+        long occupied = in.getLong();
+        if (swap) {
+            halfmoveClock = Short.reverseBytes(halfmoveClock);
+            fullmoveNumber = Short.reverseBytes(fullmoveNumber);
+            occupied = Long.reverseBytes(occupied);
+        }
+
+        var board = new ChessBoard();
+        int packed = 0;
+        boolean high = false;
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            if (!high) {
+                packed = in.get() & 0xFF;
+            }
+            int piece = high ? packed >>> 4 : packed & 0xF;
+            high = !high;
+            if (piece >= ChessPiece.PIECE_CHARS.length) {
+                throw new IllegalArgumentException("Bad piece " + piece + " in encoded position");
+            }
+            board.addPiece(ChessPosition.of(Long.numberOfTrailingZeros(squares)), ChessPiece.of(piece));
+        }
+        board.setTeamTurn((flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+
+        var game = new ChessGame(board);
+        game.setClocks(halfmoveClock & 0xFFFF, Math.max(1, fullmoveNumber & 0xFFFF));
+        return game;
+    }
+}
@@ -0,0 +1,100 @@
+package chess;
+
+/**
+ * Reads moves written in standard algebraic notation, the way PGN files record them.
+ * <p>
+ * A SAN move names the piece and the square it goes to, plus as much of the square it comes
+ * from as it takes to tell it apart from the same kind of piece going to the same square:
+ * {@code Nf3}, {@code exd5}, {@code R1e2}, {@code e8=Q+}. Reading one means finding the only
+ * legal move that fits. This game has no castling or en passant, so those moves never fit.
+ */
+final class San {
+    private San() {}
+
+    /**
+     * @return the legal move the text names for the side to move
+     * @throws InvalidMoveException if no legal move fits, or more than one does
+     */
+    static ChessMove parse(ChessGame game, String san) throws InvalidMoveException {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String text = san.substring(0, end);
+        if (text.startsWith("O-O") || text.startsWith("0-0")) {
+            throw new InvalidMoveException("Castling is not part of this game: " + san);
+        }
+
+        ChessPiece.PieceType promotion = null;
+        int equals = text.indexOf('=');
+        if (equals >= 0 && equals + 1 < text.length()) {
+            promotion = pieceType(text.charAt(equals + 1));
+            text = text.substring(0, equals);
+        } else if (text.length() > 2 && pieceType(text.charAt(text.length() - 1)) != null
+                && Character.isDigit(text.charAt(text.length() - 2))) {
+            // some writers leave the '=' out: e8Q
+            promotion = pieceType(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+
+        var type = ChessPiece.PieceType.PAWN;
+        int start = 0;
+        if (!text.isEmpty() && pieceType(text.charAt(0)) != null) {
+            type = pieceType(text.charAt(0));
+            start = 1;
+        }
+        text = text.substring(start).replace("x", "").replace("-", "");
+        if (text.length() < 2 || text.length() > 4) {
+            throw new InvalidMoveException("Not a move: " + san);
+        }
+        int toCol = text.charAt(text.length() - 2) - 'a' + 1;
+        int toRow = text.charAt(text.length() - 1) - '0';
+        if (!Bitboards.onBoard(toRow, toCol)) {
+            throw new InvalidMoveException("Not a move: " + san);
+        }
+
+        // whatever is left between the piece and the target narrows down where it comes from
+        int fromCol = 0;
+        int fromRow = 0;
+        for (char c : text.substring(0, text.length() - 2).toCharArray()) {
+            if (c >= 'a' && c <= 'h') {
+                fromCol = c - 'a' + 1;
+            } else if (c >= '1' && c <= '8') {
+                fromRow = c - '0';
+            } else {
+                throw new InvalidMoveException("Not a move: " + san);
+            }
+        }
+
+        var board = game.getBoard();
+        var target = ChessPosition.of(toRow, toCol);
+        ChessMove found = null;
+        for (var move : game.allValidMoves(game.getTeamTurn(), board)) {
+            var from = move.getStartPosition();
+            if (move.getEndPosition().equals(target) && move.getPromotionPiece() == promotion
+                    && board.getPiece(from).getPieceType() == type
+                    && (fromCol == 0 || from.getColumn() == fromCol)
+                    && (fromRow == 0 || from.getRow() == fromRow)) {
+                if (found != null) {
+                    throw new InvalidMoveException("Ambiguous move: " + san);
+                }
+                found = move;
+            }
+        }
+        if (found == null) {
+            throw new InvalidMoveException("No legal move fits: " + san);
+        }
+        return found;
+    }
+
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (c) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,316 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks a move for the side to move in a game.
+ * <p>
+ * The search deepens one ply at a time, each iteration an alpha-beta search that starts
+ * from the best line of the one before, until the time or node budget runs out or the
+ * depth limit is reached. The budget is checked every thousand or so nodes and an
+ * unfinished iteration is thrown away, so the answer always comes from the deepest
+ * iteration that completed, and the search returns shortly after its deadline. The first
+ * iteration always completes so there is a move to return.
+ * <p>
+ * Results are kept in a {@link TranspositionTable} that lives as long as this object, so
+ * searching the next position of the same game starts with what the last search learned.
+ * <p>
+ * A search can use several threads in the "lazy SMP" style: helper threads run their own
+ * iterative deepening on the same position, sharing nothing but the table. They do no
+ * useful work of their own, but they fill the table with results the main thread then
+ * finds, and since every other helper starts one ply deeper than the rest and move ordering
+ * drifts apart between threads, they explore different parts of the tree. When the main thread is done the
+ * helpers are stopped, and the deepest finished iteration of any thread is the answer.
+ * <p>
+ * Given {@link Bitbases}, the search knows the exact result of every king and pawn, rook or
+ * queen against king ending it can reach.
+ */
+public final class Search {
+    /**
+     * Score for giving checkmate right now; mate in n plies scores {@code MATE - n}
+     */
+    public static final int MATE = 31000;
+
+    private static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    /**
+     * When to stop searching. Zero means no limit; at least one limit should be set.
+     *
+     * @param millis time budget in milliseconds
+     * @param nodes  node budget
+     * @param depth  deepest iteration to search
+     */
+    public record Limits(long millis, long nodes, int depth) {
+        public Limits {
+            if (millis < 0 || nodes < 0 || depth < 0) {
+                throw new IllegalArgumentException("Search limits must not be negative");
+            }
+            if (millis == 0 && nodes == 0 && depth == 0) {
+                throw new IllegalArgumentException("At least one search limit is needed");
+            }
+        }
+
+        public static Limits time(long millis) {
+            return new Limits(millis, 0, 0);
+        }
+
+        public static Limits nodes(long nodes) {
+            return new Limits(0, nodes, 0);
+        }
+
+        public static Limits depth(int depth) {
+            return new Limits(0, 0, depth);
+        }
+    }
+
+    /**
+     * @param bestMove           move to play, or null if the side to move has none
+     * @param score              centipawns from the side to move's point of view, or a mate score
+     * @param depth              deepest iteration completed
+     * @param nodes              positions visited
+     * @param principalVariation the line the search expects, starting with the best move
+     * @param nanos              time taken in nanoseconds
+     */
+    public record Result(ChessMove bestMove, int score, int depth, long nodes,
+                         List<ChessMove> principalVariation, long nanos) {
+        /**
+         * @return True if the score is a forced mate for either side
+         */
+        public boolean isMate() {
+            return Math.abs(score) >= SearchWorker.MATE_BOUND;
+        }
+    }
+
+    /**
+     * The budget of one search: its deadline, node limit and a stop flag
+     */
+    static final class Control {
+        private final long deadline;
+        private final long nodeLimit;
+        private final AtomicLong nodes = new AtomicLong();
+        private volatile boolean stopped;
+        // the first iteration has to finish so there is always a move to return
+        private volatile boolean mayStop;
+
+        Control(Limits limits, long start) {
+            this.deadline = limits.millis() == 0 ? Long.MAX_VALUE : start + limits.millis() * 1_000_000;
+            this.nodeLimit = limits.nodes() == 0 ? Long.MAX_VALUE : limits.nodes();
+        }
+
+        /**
+         * Adds to the node count and stops the search if the budget is used up
+         *
+         * @return True if the search has been stopped
+         */
+        boolean shouldStop(long newNodes) {
+            long total = nodes.addAndGet(newNodes);
+            if (mayStop && (total >= nodeLimit || System.nanoTime() >= deadline)) {
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        boolean stopped() {
+            return stopped;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        void allowStop() {
+            mayStop = true;
+        }
+
+        boolean outOfTime(long now) {
+            return now >= deadline;
+        }
+    }
+
+    private final TranspositionTable table;
+    private Bitbases bitbases;
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Finds the best move for the side to move on one thread
+     *
+     * @param game   game to search; it is not changed
+     * @param limits when to stop
+     * @return the best move found, with its score and expected line
+     */
+    public Result search(ChessGame game, Limits limits) {
+        return search(game, limits, 1);
+    }
+
+    /**
+     * Finds the best move for the side to move
+     *
+     * @param game    game to search; it is not changed
+     * @param limits  when to stop; a node budget covers the nodes of every thread
+     * @param threads number of threads to search with, the calling thread being one of them
+     * @return the best move found, with its score and expected line
+     */
+    public Result search(ChessGame game, Limits limits, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A search needs at least one thread: " + threads);
+        }
+        long start = System.nanoTime();
+        var control = new Control(limits, start);
+        table.newSearch();
+        var board = game.getBoard();
+        long[] history = game.positionHistory();
+        int maxDepth = limits.depth() == 0 ? SearchWorker.MAX_PLY : Math.min(limits.depth(), SearchWorker.MAX_PLY);
+
+        var helpers = new ArrayList<Iterations>(threads - 1);
+        var helperThreads = new ArrayList<Thread>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            var helper = new Iterations(new SearchWorker(new ChessBoard(board), history, table, control, bitbases));
+            int startDepth = 1 + (i & 1);
+            var thread = new Thread(() -> helper.run(startDepth, maxDepth), "search-helper-" + i);
+            thread.setDaemon(true);
+            helpers.add(helper);
+            helperThreads.add(thread);
+            thread.start();
+        }
+
+        var main = new Iterations(new SearchWorker(new ChessBoard(board), history, table, control, bitbases));
+        main.runMain(control, start, maxDepth);
+        control.stop();
+        for (var thread : helperThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        var best = main;
+        long nodes = main.worker.nodes();
+        for (var helper : helpers) {
+            nodes += helper.worker.nodes();
+            if (helper.depth > best.depth && helper.line.length > 0) {
+                best = helper;
+            }
+        }
+        int[] line = best.depth == 0 ? best.line : completeLine(board, best.line, best.depth);
+        return new Result(line.length == 0 ? null : ChessMove.fromPacked(line[0]), best.score, best.depth,
+                nodes, toMoves(line), System.nanoTime() - start);
+    }
+
+    /**
+     * One thread's iterative deepening loop and the last iteration it finished
+     */
+    private static final class Iterations {
+        private final SearchWorker worker;
+        private int depth;
+        private int score;
+        private int[] line = new int[0];
+
+        Iterations(SearchWorker worker) {
+            this.worker = worker;
+        }
+
+        /**
+         * Deepens until stopped; a helper's answer is only used if it got further than the main thread
+         */
+        void run(int startDepth, int maxDepth) {
+            for (int iteration = startDepth; iteration <= maxDepth; iteration++) {
+                if (!finish(iteration)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Deepens until the budget runs out, the depth limit is reached or a mate is found
+         */
+        void runMain(Control control, long start, int maxDepth) {
+            for (int iteration = 1; iteration <= maxDepth; iteration++) {
+                if (!finish(iteration)) {
+                    return;
+                }
+                control.allowStop();
+
+                long now = System.nanoTime();
+                // the next iteration usually takes several times as long as this one, so don't start one
+                // that can't finish; a forced mate found within this depth won't change either
+                if (control.outOfTime(now + (now - start)) || line.length == 0
+                        || Math.abs(score) >= Search.MATE - iteration) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return True if the iteration finished before the search was stopped
+         */
+        private boolean finish(int iteration) {
+            int iterationScore = worker.searchRoot(iteration);
+            if (worker.aborted()) {
+                return false;
+            }
+            score = iterationScore;
+            depth = iteration;
+            line = worker.principalVariation();
+            return true;
+        }
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    public Bitbases getBitbases() {
+        return bitbases;
+    }
+
+    /**
+     * @param bitbases endgame tables for later searches to use, or null for none
+     */
+    public void setBitbases(Bitbases bitbases) {
+        this.bitbases = bitbases;
+    }
+
+    /**
+     * Table cutoffs leave the search's own line short, so follow the table's best moves from
+     * where it ends, as long as they are legal, to fill the line out to the search depth
+     */
+    private int[] completeLine(ChessBoard root, int[] line, int depth) {
+        var board = new ChessBoard(root);
+        var result = new MoveList();
+        for (int move : line) {
+            result.add(move);
+            board.makeMove(move);
+        }
+        var legal = new MoveList();
+        while (result.size() < depth) {
+            int move = TranspositionTable.move(table.probe(board.getZobristKey()));
+            legal.clear();
+            MoveGenerator.legalMoves(board, board.getTeamTurn(), ~0L, legal);
+            if (move == Move.NONE || !legal.contains(move)) {
+                break;
+            }
+            result.add(move);
+            board.makeMove(move);
+        }
+        return result.toArray();
+    }
+
+    private static List<ChessMove> toMoves(int[] line) {
+        var moves = new ArrayList<ChessMove>(line.length);
+        for (int move : line) {
+            moves.add(ChessMove.fromPacked(move));
+        }
+        return Collections.unmodifiableList(moves);
+    }
+}
@@ -0,0 +1,376 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Runs one iterative deepening alpha-beta search on its own copy of a board.
+ * <p>
+ * Each node probes the transposition table, generates the legal moves and tries them best
+ * first: the table's move, then captures by most valuable victim and least valuable
+ * attacker, promotions, the two killer moves that last caused a cutoff at this ply, and
+ * the remaining quiet moves by how often they caused cutoffs before. At depth 0 a
+ * quiescence search keeps playing captures until the position is quiet, so the static
+ * evaluation is never taken in the middle of an exchange. Moves that give check extend the
+ * search by a ply. A capture or promotion that leaves a king and one piece against a lone
+ * king is scored from the {@link Bitbases} if the search has them, instead of searched.
+ * <p>
+ * Everything a worker touches during the search is its own apart from the table and the
+ * {@link Search.Control}, including the {@link PawnHashTable} its evaluations go through,
+ * so several workers can run at once.
+ */
+final class SearchWorker {
+    static final int MAX_PLY = 64;
+    static final int INFINITY = 32000;
+    // scores this close to MATE are mates, MATE - n being mate n plies from the root
+    static final int MATE_BOUND = Search.MATE - 2 * MAX_PLY;
+    // a won ending from the bitbases; the evaluation is added so the winning side still makes progress
+    static final int KNOWN_WIN = 20000;
+
+    // check the clock and node budget once every this many nodes
+    private static final int CHECK_INTERVAL = 1024;
+
+    private static final int TABLE_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int PROMOTION_SCORE = 1 << 23;
+    private static final int KILLER_SCORE = 1 << 22;
+
+    private final ChessBoard board;
+    private final TranspositionTable table;
+    private final Search.Control control;
+    private final PawnHashTable pawns = new PawnHashTable();
+    private final Bitbases bitbases;
+
+    private final MoveList[] moves = new MoveList[MAX_PLY + 1];
+    private final int[][] orderScores = new int[MAX_PLY + 1][];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    // cutoff counts of quiet moves, indexed [from][to]
+    private final int[][] history = new int[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+    // triangular principal variation table: pv[ply] holds the best line from that ply on
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    // keys of the game's positions since its last capture or pawn move, then of the positions
+    // on the current line from path[rootIndex] on, to spot repetitions
+    private final long[] path;
+    private final int rootIndex;
+
+    private long nodes;
+    private long uncountedNodes;
+    private boolean aborted;
+
+    SearchWorker(ChessBoard board, long[] history, TranspositionTable table, Search.Control control,
+                 Bitbases bitbases) {
+        this.board = board;
+        this.path = Arrays.copyOf(history, history.length + MAX_PLY + 1);
+        this.rootIndex = history.length;
+        this.table = table;
+        this.control = control;
+        this.bitbases = bitbases;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moves[ply] = new MoveList();
+            orderScores[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Searches one iteration to the given depth
+     *
+     * @return the score from the side to move's point of view, or 0 if the search was stopped
+     * before it finished (check {@link #aborted()})
+     */
+    int searchRoot(int depth) {
+        return negamax(depth, 0, -INFINITY, INFINITY);
+    }
+
+    boolean aborted() {
+        return aborted;
+    }
+
+    long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the principal variation of the last finished iteration, packed moves
+     */
+    int[] principalVariation() {
+        return Arrays.copyOf(pv[0], pvLength[0]);
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (countNode()) {
+            return 0;
+        }
+        path[rootIndex + ply] = board.getZobristKey();
+        if (ply > 0 && isRepetition(ply)) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluation.evaluate(board, pawns);
+        }
+
+        var color = board.getTeamTurn();
+        boolean inCheck = board.isInCheck(color);
+        if (inCheck) {
+            depth++; // don't let a check push a threat past the horizon
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+
+        long key = path[rootIndex + ply];
+        long entry = table.probe(key);
+        int tableMove = Move.NONE;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                switch (TranspositionTable.bound(entry)) {
+                    case EXACT -> {
+                        return score;
+                    }
+                    case LOWER -> {
+                        if (score >= beta) return score;
+                    }
+                    case UPPER -> {
+                        if (score <= alpha) return score;
+                    }
+                }
+            }
+        }
+
+        var list = moves[ply];
+        list.clear();
+        MoveGenerator.legalMoves(board, color, ~0L, list);
+        if (list.isEmpty()) {
+            return inCheck ? -Search.MATE + ply : 0;
+        }
+        scoreMoves(ply, tableMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < list.size(); i++) {
+            int move = pickNext(ply, i);
+            board.makeMove(move);
+            int score = reachesEnding(move) ? -endingScore(ply + 1) : -negamax(depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta) {
+                        if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                            rememberCutoff(ply, move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        var bound = best >= beta ? TranspositionTable.Bound.LOWER
+                : best > originalAlpha ? TranspositionTable.Bound.EXACT : TranspositionTable.Bound.UPPER;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Searches captures and promotions only (every move when in check) until the position is
+     * quiet, letting the side to move stand pat on the static evaluation
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (countNode()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluation.evaluate(board, pawns);
+        }
+
+        var color = board.getTeamTurn();
+        boolean inCheck = board.isInCheck(color);
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = Evaluation.evaluate(board, pawns);
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        var list = moves[ply];
+        list.clear();
+        MoveGenerator.legalMoves(board, color, ~0L, list);
+        if (list.isEmpty()) {
+            return inCheck ? -Search.MATE + ply : 0;
+        }
+        scoreMoves(ply, Move.NONE);
+
+        for (int i = 0; i < list.size(); i++) {
+            int move = pickNext(ply, i);
+            if (!inCheck && !Move.isCapture(move) && !Move.isPromotion(move)) {
+                continue;
+            }
+            board.makeMove(move);
+            int score = reachesEnding(move) ? -endingScore(ply + 1) : -quiesce(ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Only moves that take material off the board can enter an ending, and positions already
+     * in one are left to the search so it can find the way to mate
+     */
+    private boolean reachesEnding(int move) {
+        return bitbases != null && (Move.isCapture(move) || Move.isPromotion(move))
+                && Long.bitCount(board.occupied()) == 3;
+    }
+
+    /**
+     * @return the bitbase result of the ending on the board for the side to move; king and
+     * bishop or knight against a king are not in the tables, and are draws
+     */
+    private int endingScore(int ply) {
+        pvLength[ply] = ply;
+        nodes++;
+        var outcome = bitbases.probe(board);
+        if (outcome == null || outcome == Bitbases.Outcome.DRAW) {
+            return 0;
+        }
+        int score = Evaluation.evaluate(board, pawns);
+        return outcome == Bitbases.Outcome.WIN ? KNOWN_WIN + score : -KNOWN_WIN + score;
+    }
+
+    /**
+     * Counts a node and every so often checks whether the search has to stop
+     *
+     * @return True if the search has been stopped
+     */
+    private boolean countNode() {
+        nodes++;
+        if (++uncountedNodes == CHECK_INTERVAL) {
+            control.shouldStop(uncountedNodes);
+            uncountedNodes = 0;
+        }
+        // another worker may have stopped the search too
+        if (control.stopped()) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    /**
+     * Repetitions inside the search, or of a position the game has already been through, are
+     * scored as draws, so the search neither walks into one when it is ahead nor misses one
+     * when it is behind
+     */
+    private boolean isRepetition(int ply) {
+        int index = rootIndex + ply;
+        for (int earlier = index - 2; earlier >= 0; earlier -= 2) {
+            if (path[earlier] == path[index]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scoreMoves(int ply, int tableMove) {
+        var list = moves[ply];
+        if (orderScores[ply].length < list.size()) {
+            orderScores[ply] = new int[list.size()];
+        }
+        int[] scores = orderScores[ply];
+        for (int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            int score;
+            if (Move.sameMove(move, tableMove)) {
+                score = TABLE_MOVE_SCORE;
+            } else if (Move.isCapture(move)) {
+                // most valuable victim first, then least valuable attacker
+                score = CAPTURE_SCORE + Evaluation.value(board.pieceAt(Move.to(move))) * 16
+                        - Evaluation.value(board.pieceAt(Move.from(move))) / 16;
+            } else if (Move.isPromotion(move)) {
+                score = PROMOTION_SCORE + Evaluation.PIECE_VALUES[Move.promotion(move).ordinal()];
+            } else if (move == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[Move.from(move)][Move.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    /**
+     * Swaps the best-scoring move not tried yet into position {@code index}; picking one
+     * at a time is cheaper than sorting when a cutoff comes early
+     */
+    private int pickNext(int ply, int index) {
+        var list = moves[ply];
+        int[] scores = orderScores[ply];
+        int best = index;
+        for (int i = index + 1; i < list.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        list.swap(index, best);
+        int score = scores[index];
+        scores[index] = scores[best];
+        scores[best] = score;
+        return list.get(index);
+    }
+
+    private void rememberCutoff(int ply, int move, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] counts = history[Move.from(move)];
+        counts[Move.to(move)] = Math.min(counts[Move.to(move)] + depth * depth, KILLER_SCORE - 1);
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        pv[ply][ply] = move;
+        int length = pvLength[ply + 1];
+        for (int next = ply + 1; next < length; next++) {
+            pv[ply][next] = pv[ply + 1][next];
+        }
+        pvLength[ply] = length;
+    }
+
+    /**
+     * Mate scores count plies from the root, but a table entry can be reached at any ply,
+     * so they are stored counting from the entry's own position instead
+     */
+    private static int toTable(int score, int ply) {
+        return score >= MATE_BOUND ? score + ply : score <= -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE_BOUND ? score - ply : score <= -MATE_BOUND ? score + ply : score;
+    }
+}
@@ -0,0 +1,181 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, keyed by Zobrist position keys.
+ * <p>
+ * A search reaches the same position through different move orders all the time; storing
+ * the best move, score and depth found for each position lets it skip or shorten the
+ * repeat visits. Entries live in one {@code long[]}: two longs per entry, the packed data
+ * and the key XORed with that data. Entries are grouped into buckets of two, a
+ * depth-preferred slot that keeps the deepest result of the current search and an
+ * always-replace slot for everything else.
+ * <p>
+ * Several search threads can share one table without locks. A write is two independent
+ * long stores, so a reader can see one half of an entry from one write and the other half
+ * from another, but then the key no longer XORs back out and the entry reads as a miss.
+ */
+public final class TranspositionTable {
+    /**
+     * How a stored score relates to the position's true score
+     */
+    public enum Bound {
+        /**
+         * The score is exact
+         */
+        EXACT,
+        /**
+         * The search failed high, the true score is at least this
+         */
+        LOWER,
+        /**
+         * The search failed low, the true score is at most this
+         */
+        UPPER
+    }
+
+    /**
+     * Returned by {@link #probe} when the position is not in the table
+     */
+    public static final long MISS = 0L;
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int BUCKET_LONGS = ENTRY_LONGS * BUCKET_ENTRIES;
+    private static final int MAX_DEPTH = 0xFF;
+    private static final Bound[] BOUNDS = Bound.values();
+
+    // entry data: move (16 bits) | score (16) | depth (8) | bound + 1 (2) | generation (8)
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int GENERATION_SHIFT = 42;
+
+    private final long[] table;
+    private final long bucketMask;
+    private int generation;
+
+    /**
+     * @param megabytes memory to use; the table gets the largest power-of-two number of
+     *                  buckets that fits
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > 1024) {
+            throw new IllegalArgumentException("Table size must be between 1 and 1024 MB: " + megabytes);
+        }
+        long buckets = Long.highestOneBit(((long) megabytes << 20) / (BUCKET_LONGS * Long.BYTES));
+        this.table = new long[(int) (buckets * BUCKET_LONGS)];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Looks up a position
+     *
+     * @param key Zobrist key of the position
+     * @return the packed entry, read with {@link #move}, {@link #score}, {@link #depth} and
+     * {@link #bound}, or {@link #MISS}
+     */
+    public long probe(long key) {
+        int index = bucket(key);
+        for (int slot = 0; slot < BUCKET_LONGS; slot += ENTRY_LONGS) {
+            long data = table[index + slot + 1];
+            if (data != MISS && (table[index + slot] ^ data) == key) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a search result. A result for a position already in the bucket replaces it;
+     * otherwise the result takes the depth-preferred slot if it searched at least as deep
+     * as what is there or that entry is from an earlier search, and the other slot if not.
+     *
+     * @param key   Zobrist key of the position
+     * @param move  best move found, packed as described in {@link Move}, or {@link Move#NONE}
+     * @param score score of the position, between {@link Short#MIN_VALUE} and {@link Short#MAX_VALUE}
+     * @param depth depth searched, clamped to 0-255
+     * @param bound what kind of score it is
+     */
+    public void store(long key, int move, int score, int depth, Bound bound) {
+        int index = bucket(key);
+        long preferred = table[index + 1];
+        boolean samePosition = (table[index] ^ preferred) == key;
+        int slot = samePosition || depth(preferred) <= depth || generation(preferred) != generation ? 0 : ENTRY_LONGS;
+
+        // keep the old best move if this search of the position did not find one
+        long existing = table[index + slot + 1];
+        if (move == Move.NONE && existing != MISS && (table[index + slot] ^ existing) == key) {
+            move = move(existing);
+        }
+
+        long data = (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) Math.clamp(depth, 0, MAX_DEPTH) << DEPTH_SHIFT)
+                | ((long) (bound.ordinal() + 1) << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+        table[index + slot] = key ^ data;
+        table[index + slot + 1] = data;
+    }
+
+    /**
+     * Marks the start of a new search, so entries left from earlier searches give way to new
+     * ones even when they were searched deeper
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /**
+     * @return number of entries the table holds
+     */
+    public int capacity() {
+        return table.length / ENTRY_LONGS;
+    }
+
+    /**
+     * @return roughly how many of every thousand entries are in use by the current search,
+     * estimated from the first thousand
+     */
+    public int hashfull() {
+        int sample = Math.min(1000, capacity());
+        int used = 0;
+        for (int entry = 0; entry < sample; entry++) {
+            long data = table[entry * ENTRY_LONGS + 1];
+            if (data != MISS && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    public static Bound bound(long entry) {
+        return BOUNDS[(int) (entry >>> BOUND_SHIFT & 3) - 1];
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    private int bucket(long key) {
+        return (int) (key & bucketMask) * BUCKET_LONGS;
+    }
+}
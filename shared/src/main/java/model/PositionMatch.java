@@ -0,0 +1,7 @@
+package model;
+
+/**
+ * A stored game that reached a position, and the first ply it did so at
+ */
+public record PositionMatch(int gameID, String whiteUsername, String blackUsername, String gameName, int ply) {
+}
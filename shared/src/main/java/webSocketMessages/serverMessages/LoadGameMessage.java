@@ -1,24 +1,30 @@
 package webSocketMessages.serverMessages;
 
 import chess.ChessGame;
-import chess.ChessGame;
+import chess.PositionCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
 
 public class LoadGameMessage extends ServerMessage {
+    // the position in PositionCodec's binary form, in Base64 to travel inside the JSON
     private final String game;
     private final ChessGame.TeamColor currentTeam;
 
     public LoadGameMessage(ChessGame game) {
         super(ServerMessageType.LOAD_GAME);
-        this.game=game.serialize();
+        var bytes=new byte[PositionCodec.encodedSize(game)];
+        PositionCodec.encode(game, ByteBuffer.wrap(bytes));
+        this.game=Base64.getEncoder().encodeToString(bytes);
         currentTeam=game.getTeamTurn();
     }
 
     public ChessGame getGame() {
-        return ChessGame.parseFromString(game, currentTeam);
+        return PositionCodec.decode(ByteBuffer.wrap(Base64.getDecoder().decode(game)));
     }
 
     @Override
     public String toString() {
         return STR."LoadGameMessage{game='\{game}\{'\''}, currentTeam=\{currentTeam}\{'}'}";
     }
-}
\ No newline at end of file
+}
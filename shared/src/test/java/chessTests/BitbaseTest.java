@@ -0,0 +1,177 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+class BitbaseTest {
+
+    private static Bitbases bitbases;
+
+    @BeforeAll
+    static void generate() {
+        bitbases = Bitbases.generate();
+    }
+
+    @Test
+    void queenWinsUnlessStalemate() {
+        var board = loadBoard("""
+                |k| | | | | | | |
+                | | | | | | | | |
+                | |Q| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | |K|
+                """);
+        board.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(Bitbases.Outcome.WIN, bitbases.probe(board));
+        board.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(Bitbases.Outcome.DRAW, bitbases.probe(board), "black is stalemated");
+    }
+
+    @Test
+    void hangingRookIsADraw() {
+        var board = loadBoard("""
+                |k| | | | | | | |
+                | |R| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | |K|
+                """);
+        board.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(Bitbases.Outcome.DRAW, bitbases.probe(board));
+        board.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(Bitbases.Outcome.WIN, bitbases.probe(board));
+    }
+
+    @Test
+    void pawnEndings() {
+        // the king in front of its pawn on the sixth row wins whoever is to move
+        var won = loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                | | | | |P| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                """);
+        won.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(Bitbases.Outcome.WIN, bitbases.probe(won));
+        won.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(Bitbases.Outcome.LOSS, bitbases.probe(won));
+
+        // black takes the pawn
+        var drawn = loadBoard("""
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |k| | | |
+                | | | | |P| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |K| | | | | | | |
+                """);
+        drawn.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(Bitbases.Outcome.DRAW, bitbases.probe(drawn));
+    }
+
+    @Test
+    void blackPiecesAreLookedUpUpsideDown() {
+        var board = loadBoard("""
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |p| | | |
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """);
+        board.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(Bitbases.Outcome.WIN, bitbases.probe(board));
+        board.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(Bitbases.Outcome.LOSS, bitbases.probe(board));
+    }
+
+    @Test
+    void otherPositionsAreNotCovered() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        assertNull(bitbases.probe(board));
+        var bishop = loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | |B| |K| | | |
+                """);
+        assertNull(bitbases.probe(bishop));
+    }
+
+    @Test
+    void writtenTablesMapBackIdentically(@TempDir Path directory) throws IOException {
+        bitbases.write(directory);
+        for (var name : new String[]{"kqk.bin", "krk.bin", "kpk.bin"}) {
+            assertEquals(65536, Files.size(directory.resolve(name)));
+        }
+        var mapped = Bitbases.open(directory);
+        var random = new java.util.Random(20);
+        for (int i = 0; i < 2000; i++) {
+            var board = new ChessBoard();
+            int whiteKing = random.nextInt(64);
+            int blackKing = random.nextInt(64);
+            int piece = random.nextInt(64);
+            if (whiteKing == blackKing || piece == whiteKing || piece == blackKing) {
+                continue;
+            }
+            board.addPiece(square(whiteKing), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+            board.addPiece(square(blackKing), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+            board.addPiece(square(piece), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+            board.setTeamTurn(random.nextBoolean() ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+            assertEquals(bitbases.probe(board), mapped.probe(board));
+        }
+    }
+
+    @Test
+    void searchTakesIntoWonEnding() {
+        // the rook takes the knight, and the bitbase knows the rook ending is won
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |k| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | |n| | | | | | |
+                | |R| | |K| | | |
+                """));
+        var search = new Search();
+        search.setBitbases(bitbases);
+        var result = search.search(game, Search.Limits.depth(2));
+        assertEquals(new ChessMove(new ChessPosition(1, 2), new ChessPosition(2, 2), null), result.bestMove());
+        assertTrue(result.score() > 10000);
+    }
+
+    private static ChessPosition square(int index) {
+        return new ChessPosition(index / 8 + 1, index % 8 + 1);
+    }
+}
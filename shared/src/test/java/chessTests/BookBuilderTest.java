@@ -0,0 +1,131 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookBuilderTest {
+
+    private static final String GAMES = """
+            [Event "Casual"]
+            [White "A"]
+            [Black "B"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 {the usual} Nc6 (2... d6 3. d4) 3. Bb5 a6 $1 4. Ba4 Nf6 5. O-O Be7 1-0
+
+            [Event "Casual"]
+            [Result "0-1"]
+
+            1.e4 c5 2.Nf3 d6 3.d4 cxd4 4.Nxd4 Nf6 5.Nc3 a6 0-1
+
+            [Event "Casual"]
+            [Result "1/2-1/2"]
+
+            1. d4 d5 2. c4 e6 3. Nc3 Nf6 1/2-1/2
+
+            [Event "Unfinished"]
+            [Result "*"]
+
+            1. d4 Nf6 *
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void buildsBookFromGames() throws IOException, InvalidMoveException {
+        var pgn = directory.resolve("games.pgn");
+        Files.writeString(pgn, GAMES);
+        var output = directory.resolve("book.bin");
+        var stats = new BookBuilder(10, 1, 2).build(List.of(pgn), output);
+
+        assertEquals(4, stats.games());
+        assertEquals(1, stats.truncated(), "the castling game stops at O-O");
+        var book = PolyglotBook.open(output);
+        assertEquals(stats.entries(), book.size());
+
+        var game = new ChessGame();
+        var start = book.lookup(game);
+        assertEquals(2, start.size());
+        // e4 won one game and lost one, d4 drew one
+        assertEquals(move(2, 5, 4, 5), start.get(0).move());
+        assertEquals(2, start.get(0).weight());
+        assertEquals(move(2, 4, 4, 4), start.get(1).move());
+        assertEquals(1, start.get(1).weight());
+
+        game.makeMove(move(2, 5, 4, 5));
+        assertEquals(List.of(move(7, 3, 5, 3), move(7, 5, 5, 5)), book.getMoves(game));
+
+        // the unfinished game's 1... Nf6 is not in the book
+        var afterD4 = new ChessGame();
+        afterD4.makeMove(move(2, 4, 4, 4));
+        assertEquals(List.of(move(7, 4, 5, 4)), book.getMoves(afterD4));
+    }
+
+    @Test
+    void leavesOutRareMoves() throws IOException {
+        var pgn = directory.resolve("games.pgn");
+        Files.writeString(pgn, GAMES);
+        var output = directory.resolve("book.bin");
+        new BookBuilder(8, 2, 1).build(List.of(pgn), output);
+
+        // 1. e4 is the only move played in two games
+        var book = PolyglotBook.open(output);
+        assertEquals(1, book.size());
+        assertEquals(List.of(move(2, 5, 4, 5)), book.getMoves(new ChessGame()));
+    }
+
+    @Test
+    void readsDisambiguationAndPromotions() throws IOException {
+        var pgn = directory.resolve("promotion.pgn");
+        Files.writeString(pgn, """
+                [Result "1-0"]
+                1. h4 g5 2. hxg5 h6 3. gxh6 Nf6 4. h7 Ng8 5. hxg8=Q Rxg8 6. Nh3 Rh8 7. Ng5 Rg8 8. Nf3 Rh8 9. Ng1 Rg8 10. Nc3 Rh8 11. e3 Rg8 12. Nge2 1-0
+                """);
+        var output = directory.resolve("book.bin");
+        var stats = new BookBuilder(40, 1, 1).build(List.of(pgn), output);
+        assertEquals(0, stats.truncated());
+        assertEquals(23, stats.entries());
+    }
+
+    @Test
+    void replaysSetUpGamesFromTheirPosition() throws IOException, InvalidMoveException {
+        var pgn = directory.resolve("setup.pgn");
+        Files.writeString(pgn, """
+                [Result "1-0"]
+                [SetUp "1"]
+                [FEN "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2"]
+
+                2. Nf3 Nc6 1-0
+
+                [Result "0-1"]
+                [SetUp "1"]
+
+                1. d4 d5 0-1
+                """);
+        var output = directory.resolve("book.bin");
+        var stats = new BookBuilder(10, 1, 1).build(List.of(pgn), output);
+        assertEquals(2, stats.games());
+        assertEquals(1, stats.truncated(), "a set-up game without a FEN tag can't be placed");
+        assertEquals(2, stats.entries());
+
+        var book = PolyglotBook.open(output);
+        var game = new ChessGame();
+        assertTrue(book.getMoves(game).isEmpty());
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 5, 5, 5));
+        assertEquals(List.of(move(1, 7, 3, 6)), book.getMoves(game));
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
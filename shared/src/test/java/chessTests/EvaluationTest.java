@@ -0,0 +1,162 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+class EvaluationTest {
+
+    @Test
+    void startingPositionIsEven() {
+        var game = new ChessGame();
+        assertEquals(0, game.evaluate());
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(0, game.evaluate());
+    }
+
+    @Test
+    void extraMaterialCounts() {
+        var game = new ChessGame();
+        game.getBoard().removePiece(new ChessPosition(8, 4)); // black queen
+        assertTrue(game.evaluate() > 700);
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertTrue(game.evaluate() < -700);
+    }
+
+    @Test
+    void kingCentralizesInEndgame() {
+        var centre = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |K| | | | |
+                | | | | | | | | |
+                | | | |P| | | | |
+                | | | | | | | | |
+                """);
+        var corner = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |P| | | | |
+                |K| | | | | | | |
+                """);
+        assertTrue(centre.evaluate() > corner.evaluate());
+    }
+
+    @Test
+    void passedPawnIsWorthMoreThanABlockedOne() {
+        var passed = gameFor("""
+                | | | | |k| | | |
+                |p| | | | | | | |
+                | | | | | | | | |
+                | | | |P| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """);
+        var blocked = gameFor("""
+                | | | | |k| | | |
+                | | | | |p| | | |
+                | | | | | | | | |
+                | | | |P| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """);
+        assertTrue(passed.evaluate() > blocked.evaluate());
+    }
+
+    @Test
+    void brokenPawnsAreWorthLess() {
+        var connected = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | |P|P| | | | |
+                | | | | |K| | | |
+                """);
+        var isolated = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | |P| |P| | | |
+                | | | | |K| | | |
+                """);
+        var doubled = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | |P| | | | | |
+                | | |P| | | | | |
+                | | | | |K| | | |
+                """);
+        assertTrue(connected.evaluate() > isolated.evaluate());
+        assertTrue(isolated.evaluate() > doubled.evaluate());
+    }
+
+    // the totals kept up as pieces move must match the same position set up from scratch,
+    // and swapping the colors (and the side to move) must give the same score
+    @Test
+    void incrementalAndMirroredScoresAgreeInRandomGames() throws InvalidMoveException {
+        var random = new Random(16);
+        for (int gameNumber = 0; gameNumber < 50; gameNumber++) {
+            var game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                var rebuilt = ChessGame.parseFromString(game.serialize(), game.getTeamTurn());
+                assertEquals(rebuilt.evaluate(), game.evaluate(), "Totals drifted on\n" + game.getBoard());
+                assertEquals(game.evaluate(), mirror(game).evaluate(), "Not symmetric on\n" + game.getBoard());
+
+                var moves = new ArrayList<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    private static ChessGame mirror(ChessGame game) {
+        var board = new ChessBoard();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var piece = game.getBoard().getPiece(new ChessPosition(row, col));
+                if (piece != null) {
+                    var color = piece.getTeamColor() == ChessGame.TeamColor.WHITE
+                            ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+                    board.addPiece(new ChessPosition(9 - row, col), new ChessPiece(color, piece.getPieceType()));
+                }
+            }
+        }
+        var mirrored = new ChessGame();
+        mirrored.setTeamTurn(game.getTeamTurn() == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        mirrored.setBoard(board);
+        return mirrored;
+    }
+
+    private static ChessGame gameFor(String boardText) {
+        var game = new ChessGame();
+        game.setBoard(loadBoard(boardText));
+        return game;
+    }
+}
@@ -0,0 +1,164 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+class GameStatusTest {
+
+    @Test
+    void checkmate() {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | |k| | | |
+                | | | | |Q| | | |
+                | | | | |K| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                """));
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.getStatus(ChessGame.TeamColor.BLACK));
+        assertEquals(ChessGame.GameStatus.NORMAL, game.getStatus(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void stalemate() {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                |k| | | | | | | |
+                | | |Q| | | | | |
+                | |K| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                """));
+        assertEquals(ChessGame.GameStatus.STALEMATE, game.getStatus(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void checkWithOnlyABlockToEscape() {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | | | | |k|
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |B|P|P|P|
+                |r| | | | | |K| |
+                """));
+        // only the bishop stepping in between saves white
+        assertEquals(ChessGame.GameStatus.CHECK, game.getStatus(ChessGame.TeamColor.WHITE));
+        assertEquals(2, game.allValidMoves(ChessGame.TeamColor.WHITE, game.getBoard()).size());
+    }
+
+    @Test
+    void threefoldRepetition() throws InvalidMoveException {
+        var game = new ChessGame();
+        for (int round = 0; round < 2; round++) {
+            assertFalse(game.isThreefoldRepetition());
+            game.makeMove(move(1, 7, 3, 6));
+            game.makeMove(move(8, 7, 6, 6));
+            game.makeMove(move(3, 6, 1, 7));
+            assertNotEquals(ChessGame.GameStatus.REPETITION, game.getStatus(game.getTeamTurn()));
+            game.makeMove(move(6, 6, 8, 7));
+        }
+        // the starting position, white to move, for the third time
+        assertTrue(game.isThreefoldRepetition());
+        assertEquals(ChessGame.GameStatus.REPETITION, game.getStatus(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void capturesAndPawnMovesResetTheClock() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move(1, 7, 3, 6));
+        assertEquals(1, game.getHalfmoveClock());
+        game.makeMove(move(7, 5, 5, 5));
+        assertEquals(0, game.getHalfmoveClock());
+        game.makeMove(move(3, 6, 5, 5));
+        assertEquals(0, game.getHalfmoveClock());
+        game.makeMove(move(8, 7, 6, 6));
+        assertEquals(1, game.getHalfmoveClock());
+    }
+
+    @Test
+    void fiftyMovesWithoutCaptureOrPawnMoveDraw() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | | | | |k|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |K| | | | | | | |
+                """));
+        // the kings wander without ever repeating a position
+        var seen = new HashSet<String>();
+        seen.add(game.serialize() + game.getTeamTurn());
+        while (game.getHalfmoveClock() < 100) {
+            assertEquals(ChessGame.GameStatus.NORMAL, game.getStatus(game.getTeamTurn()));
+            var moves = new ArrayList<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+            moves.sort(Comparator.comparing(ChessMove::toString));
+            boolean moved = false;
+            for (var move : moves) {
+                var next = ChessGame.parseFromString(game.serialize(), game.getTeamTurn());
+                next.makeMove(move);
+                if (seen.add(next.serialize() + next.getTeamTurn())) {
+                    game.makeMove(move);
+                    moved = true;
+                    break;
+                }
+            }
+            assertTrue(moved);
+        }
+        assertEquals(ChessGame.GameStatus.FIFTY_MOVES, game.getStatus(game.getTeamTurn()));
+    }
+
+    // the single-pass status must agree with the separate check, checkmate and stalemate tests,
+    // and repetitions with a count of every earlier position of the game
+    @Test
+    void matchesSeparateTestsInRandomGames() throws InvalidMoveException {
+        var random = new Random(11);
+        for (int gameNumber = 0; gameNumber < 100; gameNumber++) {
+            var game = new ChessGame();
+            var seen = new HashMap<String, Integer>();
+            for (int ply = 0; ply < 200; ply++) {
+                var color = game.getTeamTurn();
+                int occurrences = seen.merge(game.serialize() + color, 1, Integer::sum);
+                assertEquals(occurrences >= 3, game.isThreefoldRepetition(), "Wrong repetition on\n" + game.getBoard());
+                var expected = game.isInStalemate(color) ? ChessGame.GameStatus.STALEMATE
+                        : game.isInCheckmate(color) ? ChessGame.GameStatus.CHECKMATE
+                        : occurrences >= 3 ? ChessGame.GameStatus.REPETITION
+                        : game.getHalfmoveClock() >= 100 ? ChessGame.GameStatus.FIFTY_MOVES
+                        : game.isInCheck(color) ? ChessGame.GameStatus.CHECK
+                        : ChessGame.GameStatus.NORMAL;
+                assertEquals(expected, game.getStatus(color), "Wrong status on\n" + game.getBoard());
+
+                var moves = new ArrayList<>(game.allValidMoves(color, game.getBoard()));
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
@@ -0,0 +1,75 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveCacheTest {
+
+    @Test
+    void gamesShareCachedPositions() throws InvalidMoveException {
+        var cache = new MoveCache(1024);
+        var first = new ChessGame();
+        first.setMoveCache(cache);
+        var second = new ChessGame();
+        second.setMoveCache(cache);
+
+        first.validMoves(new ChessPosition(2, 5));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        second.makeMove(move);
+        assertEquals(1, cache.getHits());
+        assertEquals(ChessGame.TeamColor.BLACK, second.getTeamTurn());
+    }
+
+    @Test
+    void evictsWhenFull() {
+        var cache = new MoveCache(1);
+        var game = new ChessGame();
+        game.setMoveCache(cache);
+
+        game.validMoves(new ChessPosition(2, 5));
+        game.validMoves(new ChessPosition(7, 5)); // black's moves take the only slot
+        game.validMoves(new ChessPosition(2, 5));
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.capacity());
+    }
+
+    // a small cache keeps evicting, and must still give the same moves as generating them
+    @Test
+    void matchesUncachedInRandomGames() throws InvalidMoveException {
+        var cache = new MoveCache(64);
+        var random = new Random(12);
+        for (int gameNumber = 0; gameNumber < 100; gameNumber++) {
+            var cached = new ChessGame();
+            cached.setMoveCache(cache);
+            var uncached = new ChessGame();
+            uncached.setMoveCache(null);
+            for (int ply = 0; ply < 150; ply++) {
+                var color = cached.getTeamTurn();
+                for (var team : ChessGame.TeamColor.values()) {
+                    assertEquals(new HashSet<>(uncached.allValidMoves(team, uncached.getBoard())),
+                            new HashSet<>(cached.allValidMoves(team, cached.getBoard())));
+                }
+                assertEquals(uncached.getStatus(color), cached.getStatus(color));
+
+                var moves = new ArrayList<>(uncached.allValidMoves(color, uncached.getBoard()));
+                if (moves.isEmpty()) {
+                    break;
+                }
+                var move = moves.get(random.nextInt(moves.size()));
+                cached.makeMove(move);
+                uncached.makeMove(move);
+            }
+        }
+        assertTrue(cache.getHits() > 0);
+    }
+}
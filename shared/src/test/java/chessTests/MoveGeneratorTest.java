@@ -0,0 +1,86 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+class MoveGeneratorTest {
+
+    // play random games and make sure both ways of finding legal moves always agree
+    @Test
+    void legalMatchesSimulateInRandomGames() throws InvalidMoveException {
+        var random = new Random(240);
+        for (int gameNumber = 0; gameNumber < 200; gameNumber++) {
+            var game = new ChessGame();
+            game.setMoveCache(null); // both generators have to actually run
+            for (int ply = 0; ply < 150; ply++) {
+                var legal = movesFor(game, ChessGame.MoveGeneration.LEGAL);
+                var simulated = movesFor(game, ChessGame.MoveGeneration.SIMULATE);
+                assertEquals(simulated, legal, "Move generators disagree on\n" + game.getBoard());
+                if (legal.isEmpty()) {
+                    break;
+                }
+                var moves = new ArrayList<>(legal);
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    void pinnedPieceStaysOnLine() {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | |r| | | |
+                | | | | | | | | |
+                | | | | |R| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |K| | | |
+                """));
+
+        var moves = game.validMoves(new ChessPosition(4, 5));
+        assertEquals(loadMoves(new ChessPosition(4, 5), new int[][]{{2, 5}, {3, 5}, {5, 5}, {6, 5}}),
+                new HashSet<>(moves));
+    }
+
+    @Test
+    void doubleCheckOnlyKingMoves() {
+        var game = new ChessGame();
+        game.setBoard(loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | |r| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |n| | | | |
+                | | |Q| | | | | |
+                | | | | |K| | | |
+                """));
+
+        var moves = game.allValidMoves(ChessGame.TeamColor.WHITE, game.getBoard());
+        assertTrue(moves.stream().allMatch(move -> move.getStartPosition().equals(new ChessPosition(1, 5))));
+        assertFalse(moves.isEmpty());
+    }
+
+    private static HashSet<ChessMove> movesFor(ChessGame game, ChessGame.MoveGeneration mode) {
+        game.setMoveGeneration(mode);
+        var moves = new HashSet<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var piece = game.getBoard().getPiece(new ChessPosition(row, col));
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    assertTrue(moves.containsAll(game.validMoves(new ChessPosition(row, col))));
+                }
+            }
+        }
+        return moves;
+    }
+}
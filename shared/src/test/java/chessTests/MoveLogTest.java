@@ -0,0 +1,80 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveLogTest {
+
+    @Test
+    void countsPliesFromTheMoveNumber() throws InvalidMoveException {
+        var game = new ChessGame();
+        assertEquals(0, game.getPlyCount());
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertEquals(1, game.getPlyCount());
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        assertEquals(2, game.getPlyCount());
+
+        assertEquals(41, ChessGame.fromFen("8/8/3k4/8/8/2K5/1R6/8 b - - 0 21").getPlyCount());
+    }
+
+    @Test
+    void replayingTheLogReachesTheSamePosition() throws InvalidMoveException {
+        var random = new Random(24);
+        var game = new ChessGame();
+        var halfway = (ChessGame) null;
+        for (int ply = 0; ply < 80; ply++) {
+            if (ply == 30) {
+                halfway = ChessGame.fromFen(game.toFen());
+            }
+            var moves = new ArrayList<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+
+        var replayed = new ChessGame();
+        for (int move : game.getMovesSince(0)) {
+            replayed.makeMove(move);
+        }
+        assertEquals(game.toFen(), replayed.toFen());
+        assertEquals(game.getZobristKey(), replayed.getZobristKey());
+
+        for (int move : game.getMovesSince(30)) {
+            halfway.makeMove(move);
+        }
+        assertEquals(game.toFen(), halfway.toFen());
+        assertEquals(0, halfway.getMovesSince(game.getPlyCount()).length);
+    }
+
+    @Test
+    void keysFollowTheMoves() throws InvalidMoveException {
+        var game = new ChessGame();
+        var expected = new long[3];
+        int ply = 0;
+        for (var move : new String[]{"e2e4", "e7e5", "g1f3"}) {
+            game.makeMove(new ChessMove(new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                    new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null));
+            expected[ply++] = game.getZobristKey();
+        }
+        assertArrayEquals(expected, game.getKeysSince(0));
+        assertArrayEquals(new long[]{expected[2]}, game.getKeysSince(2));
+        assertEquals(ChessGame.fromFen("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w - - 0 2").getZobristKey(),
+                game.getKeysSince(1)[0]);
+    }
+
+    @Test
+    void onlyKnowsMovesSinceItWasSetUp() throws InvalidMoveException {
+        var game = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w - - 0 10");
+        game.makeMove(new ChessMove(new ChessPosition(1, 8), new ChessPosition(5, 8), null));
+        assertEquals(1, game.getMovesSince(18).length);
+        assertThrows(IllegalArgumentException.class, () -> game.getMovesSince(17));
+        assertThrows(IllegalArgumentException.class, () -> game.getMovesSince(20));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(game.getMovesSince(18)[0]));
+    }
+}
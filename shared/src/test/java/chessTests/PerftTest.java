@@ -0,0 +1,132 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+/**
+ * Node counts for the usual perft positions. This game has no castling or en passant and a
+ * king may not capture a queen, so the counts differ from published tables wherever those
+ * rules matter; these were checked against the original move-by-move implementation.
+ */
+class PerftTest {
+
+    private static final String KIWIPETE = """
+            |r| | | |k| | |r|
+            |p| |p|p|q|p|b| |
+            |b|n| | |p|n|p| |
+            | | | |P|N| | | |
+            | |p| | |P| | | |
+            | | |N| | |Q| |p|
+            |P|P|P|B|B|P|P|P|
+            |R| | | |K| | |R|
+            """;
+
+    private static final String ROOK_ENDGAME = """
+            | | | | | | | | |
+            | | |p| | | | | |
+            | | | |p| | | | |
+            |K|P| | | | | |r|
+            | |R| | | |p| |k|
+            | | | | | | | | |
+            | | | | |P| |P| |
+            | | | | | | | | |
+            """;
+
+    private static final String PROMOTIONS = """
+            |r| | | |k| | |r|
+            |P|p|p|p| |p|p|p|
+            | |b| | | |n|b|N|
+            |n|P| | | | | | |
+            |B|B|P| |P| | | |
+            |q| | | | |N| | |
+            |P|p| |P| | |P|P|
+            |R| | |Q| |R|K| |
+            """;
+
+    private static final String DISCOVERED_CHECKS = """
+            |r|n|b|q| |k| |r|
+            |p|p| |P|b|p|p|p|
+            | | |p| | | | | |
+            | | | | | | | | |
+            | | |B| | | | | |
+            | | | | | | | | |
+            |P|P|P| |N|n|P|P|
+            |R|N|B|Q|K| | |R|
+            """;
+
+    @Test
+    void startingPosition() {
+        assertCounts(new ChessGame(), 20, 400, 8902, 197281, 4865351);
+    }
+
+    @Test
+    void kiwipete() {
+        assertCounts(gameFor(KIWIPETE), 46, 1865, 86585);
+    }
+
+    @Test
+    void rookEndgame() {
+        assertCounts(gameFor(ROOK_ENDGAME), 14, 191, 2810, 43087, 671300);
+    }
+
+    @Test
+    void promotions() {
+        assertCounts(gameFor(PROMOTIONS), 6, 258, 9217);
+    }
+
+    @Test
+    void discoveredChecks() {
+        assertCounts(gameFor(DISCOVERED_CHECKS), 43, 1452, 59920);
+    }
+
+    @Test
+    void simulateAgrees() {
+        var game = gameFor(KIWIPETE);
+        game.setMoveGeneration(ChessGame.MoveGeneration.SIMULATE);
+        assertEquals(1865, Perft.count(game, 2));
+        game.setBoard(loadBoard(ROOK_ENDGAME));
+        assertEquals(43087, Perft.count(game, 4));
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        var pool = new ForkJoinPool(4);
+        try {
+            var game = gameFor(KIWIPETE);
+            assertEquals(Perft.count(game, 4), Perft.countParallel(game, 4, pool));
+            assertEquals(671300, Perft.countParallel(gameFor(ROOK_ENDGAME), 5, pool));
+            assertEquals(20, Perft.countParallel(new ChessGame(), 1, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void divideSumsToCount() {
+        var game = gameFor(KIWIPETE);
+        var before = new ChessBoard(game.getBoard());
+
+        var divided = Perft.divide(game, 3);
+        assertEquals(46, divided.size());
+        assertEquals(86585, divided.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(before, game.getBoard(), "Perft should not change the game");
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+    }
+
+    private static ChessGame gameFor(String boardText) {
+        var game = new ChessGame();
+        game.setBoard(loadBoard(boardText));
+        return game;
+    }
+
+    private static void assertCounts(ChessGame game, long... expected) {
+        for (int depth = 1; depth <= expected.length; depth++) {
+            assertEquals(expected[depth - 1], Perft.count(game, depth), "Wrong count at depth " + depth);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotBookTest {
+
+    @TempDir
+    Path directory;
+
+    // published Polyglot keys of the starting position and of the position after 1. e4
+    private static final long START = 0x463B96181691FC9CL;
+    private static final long AFTER_E4 = 0x823C9B50FD114196L;
+
+    private record Entry(long key, int move, int weight) {}
+
+    @Test
+    void keysMatchPolyglot() throws InvalidMoveException {
+        var game = new ChessGame();
+        assertEquals(START, PolyglotBook.polyglotKey(game));
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertEquals(AFTER_E4, PolyglotBook.polyglotKey(game));
+
+        // kings and rooks that have left their squares give up castling
+        assertEquals(0x652A607CA3F242C1L, PolyglotBook.polyglotKey(
+                ChessGame.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3")));
+        assertEquals(0x5C3F9B829B279560L, PolyglotBook.polyglotKey(
+                ChessGame.fromFen("rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4")));
+    }
+
+    @Test
+    void findsBookMovesByWeight() throws IOException, InvalidMoveException {
+        var game = new ChessGame();
+        var e4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var d4 = new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null);
+        var illegal = new ChessMove(new ChessPosition(2, 5), new ChessPosition(5, 5), null);
+
+        var afterE4 = new ChessGame();
+        afterE4.makeMove(e4);
+        var e5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+
+        var entries = new ArrayList<>(List.of(
+                new Entry(START, encode(e4), 10),
+                new Entry(START, encode(d4), 20),
+                new Entry(START, encode(illegal), 50),
+                new Entry(AFTER_E4, encode(e5), 1)));
+        // filler positions on both sides of the real ones
+        for (long key = 1; key < 1000; key++) {
+            entries.add(new Entry(key * 0x9E3779B97F4A7C15L, 0, 1));
+        }
+        var book = PolyglotBook.open(write(entries));
+
+        assertEquals(entries.size(), book.size());
+        assertEquals(List.of(d4, e4), book.getMoves(game));
+        assertEquals(20, book.lookup(game).getFirst().weight());
+        assertEquals(List.of(e5), book.getMoves(afterE4));
+
+        afterE4.makeMove(e5);
+        assertTrue(book.lookup(afterE4).isEmpty());
+    }
+
+    @Test
+    void emptyBookFindsNothing() throws IOException {
+        var book = PolyglotBook.open(write(List.of()));
+        assertEquals(0, book.size());
+        assertTrue(book.getMoves(new ChessGame()).isEmpty());
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        var path = directory.resolve("truncated.bin");
+        Files.write(path, new byte[20]);
+        assertThrows(IOException.class, () -> PolyglotBook.open(path));
+    }
+
+    private Path write(List<Entry> entries) throws IOException {
+        var sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(Entry::key, Long::compareUnsigned));
+        var buffer = ByteBuffer.allocate(sorted.size() * 16);
+        for (var entry : sorted) {
+            buffer.putLong(entry.key()).putShort((short) entry.move()).putShort((short) entry.weight()).putInt(0);
+        }
+        var path = directory.resolve("book.bin");
+        Files.write(path, buffer.array());
+        return path;
+    }
+
+    private static int encode(ChessMove move) {
+        return (move.getEndPosition().getColumn() - 1)
+                | (move.getEndPosition().getRow() - 1) << 3
+                | (move.getStartPosition().getColumn() - 1) << 6
+                | (move.getStartPosition().getRow() - 1) << 9;
+    }
+}
@@ -0,0 +1,128 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionCodecTest {
+
+    @Test
+    void startingPosition() {
+        var game = new ChessGame();
+        var buffer = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        PositionCodec.encode(game, buffer);
+        assertEquals(30, buffer.position());
+        assertEquals(PositionCodec.encodedSize(game), buffer.position());
+        assertEquals(PositionCodec.VERSION, buffer.get(0));
+        assertEquals(0xFFFF_0000_0000_FFFFL, buffer.getLong(6));
+
+        var copy = PositionCodec.decode(buffer.flip());
+        assertEquals(game.getBoard(), copy.getBoard());
+        assertEquals(ChessGame.TeamColor.WHITE, copy.getTeamTurn());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void fullBoardFitsMaxBytes() {
+        var game = ChessGame.fromFen("qqqqkqqq/pppppppp/nnnnnnnn/bbbbbbbb/RRRRRRRR/NNNNNNNN/PPPPPPPP/QQQKQQQQ w - - 0 1");
+        assertEquals(PositionCodec.MAX_BYTES, PositionCodec.encodedSize(game));
+        var buffer = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        PositionCodec.encode(game, buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(game.toFen(), PositionCodec.decode(buffer.flip()).toFen());
+    }
+
+    @Test
+    void keepsSideToMoveAndClocks() {
+        var game = ChessGame.fromFen("8/8/3k4/8/8/2K5/1R6/8 b - - 37 112");
+        var buffer = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        PositionCodec.encode(game, buffer);
+        // three pieces take two bytes, the last half empty
+        assertEquals(16, buffer.position());
+        var copy = PositionCodec.decode(buffer.flip());
+        assertEquals(game.toFen(), copy.toFen());
+    }
+
+    @Test
+    void sameBytesInEitherByteOrder() {
+        var game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1");
+        var big = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        var little = ByteBuffer.allocate(PositionCodec.MAX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        PositionCodec.encode(game, big);
+        PositionCodec.encode(game, little);
+        assertArrayEquals(big.array(), little.array());
+        assertEquals(game.getBoard(), PositionCodec.decode(ByteBuffer.wrap(big.array())).getBoard());
+        assertEquals(game.getBoard(), PositionCodec.decode(little.flip()).getBoard());
+    }
+
+    @Test
+    void positionsFollowEachOtherInABuffer() throws InvalidMoveException {
+        var game = new ChessGame();
+        var buffer = ByteBuffer.allocate(4 * PositionCodec.MAX_BYTES);
+        var fens = new ArrayList<String>();
+        for (var move : new String[]{"e2e4", "c7c5", "g1f3"}) {
+            PositionCodec.encode(game, buffer);
+            fens.add(game.toFen());
+            game.makeMove(new ChessMove(position(move, 0), position(move, 2), null));
+        }
+        buffer.flip();
+        for (var fen : fens) {
+            assertEquals(fen, PositionCodec.decode(buffer).toFen());
+        }
+    }
+
+    @Test
+    void rejectsOtherVersionsAndBadData() {
+        var buffer = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        PositionCodec.encode(new ChessGame(), buffer);
+        var bytes = buffer.array();
+
+        var version = bytes.clone();
+        version[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(ByteBuffer.wrap(version)));
+
+        var flags = bytes.clone();
+        flags[1] = 4;
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(ByteBuffer.wrap(flags)));
+
+        var piece = bytes.clone();
+        piece[14] = (byte) 0xFC;
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(ByteBuffer.wrap(piece)));
+
+        assertThrows(BufferOverflowException.class, () -> PositionCodec.encode(new ChessGame(), ByteBuffer.allocate(29)));
+    }
+
+    @Test
+    void roundTripsRandomGames() throws InvalidMoveException {
+        var random = new Random(23);
+        var buffer = ByteBuffer.allocate(PositionCodec.MAX_BYTES);
+        for (int gameNumber = 0; gameNumber < 30; gameNumber++) {
+            var game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                PositionCodec.encode(game, buffer.clear());
+                assertEquals(PositionCodec.encodedSize(game), buffer.position());
+                var copy = PositionCodec.decode(buffer.flip());
+                assertEquals(game.getBoard(), copy.getBoard());
+                assertEquals(game.getZobristKey(), copy.getZobristKey());
+                assertEquals(game.toFen(), copy.toFen());
+
+                var moves = new ArrayList<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    private static ChessPosition position(String move, int at) {
+        return new ChessPosition(move.charAt(at + 1) - '0', move.charAt(at) - 'a' + 1);
+    }
+}
@@ -0,0 +1,144 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoffTests.TestFactory.*;
+
+class SearchTest {
+
+    @Test
+    void findsMateInOne() {
+        var game = gameFor("""
+                | | | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | | | |K| |
+                """);
+        var result = new Search().search(game, Search.Limits.depth(4));
+
+        assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        assertTrue(result.isMate());
+        assertEquals(Search.MATE - 1, result.score());
+    }
+
+    @Test
+    void findsMateInTwo() {
+        // two rooks roll the king up the board
+        var game = gameFor("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | | | | | |
+                | |R| | | | |K| |
+                """);
+        var result = new Search().search(game, Search.Limits.depth(6));
+
+        assertEquals(Search.MATE - 3, result.score());
+        assertEquals(3, result.principalVariation().size());
+    }
+
+    @Test
+    void winsHangingQueen() {
+        var game = gameFor("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |q| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |R| |K| | |
+                """);
+        var result = new Search().search(game, Search.Limits.depth(3));
+
+        assertEquals(new ChessMove(new ChessPosition(1, 4), new ChessPosition(5, 4), null), result.bestMove());
+        assertTrue(result.score() > 300);
+    }
+
+    @Test
+    void stopsAtDeadline() {
+        var game = new ChessGame();
+        long start = System.nanoTime();
+        var result = new Search().search(game, Search.Limits.time(100));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(millis < 400, "Search took " + millis + " ms");
+        assertNotNull(result.bestMove());
+        assertTrue(game.validMoves(result.bestMove().getStartPosition()).contains(result.bestMove()));
+        assertTrue(result.depth() >= 1);
+    }
+
+    @Test
+    void respectsNodeBudget() {
+        var result = new Search().search(new ChessGame(), Search.Limits.nodes(20_000));
+        assertNotNull(result.bestMove());
+        assertTrue(result.nodes() < 20_000 + 2048, "Searched " + result.nodes() + " nodes");
+    }
+
+    @Test
+    void noMoveWhenMated() {
+        var game = gameFor("""
+                |R| | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """);
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        var result = new Search().search(game, Search.Limits.depth(3));
+
+        assertNull(result.bestMove());
+        assertEquals(-Search.MATE, result.score());
+    }
+
+    @Test
+    void helperThreadsShareTheWork() {
+        var game = gameFor("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | | | | | |
+                | |R| | | | |K| |
+                """);
+        var result = new Search().search(game, Search.Limits.depth(6), 4);
+        assertEquals(Search.MATE - 3, result.score());
+
+        long start = System.nanoTime();
+        var timed = new Search().search(new ChessGame(), Search.Limits.time(100), 4);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis < 400, "Search took " + millis + " ms");
+        assertNotNull(timed.bestMove());
+
+        assertThrows(IllegalArgumentException.class, () -> new Search().search(game, Search.Limits.depth(1), 0));
+    }
+
+    @Test
+    void leavesGameUnchanged() {
+        var game = new ChessGame();
+        var before = game.serialize();
+        new Search().search(game, Search.Limits.depth(4));
+        assertEquals(before, game.serialize());
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+    }
+
+    private static ChessGame gameFor(String boardText) {
+        var game = new ChessGame();
+        game.setBoard(loadBoard(boardText));
+        return game;
+    }
+}
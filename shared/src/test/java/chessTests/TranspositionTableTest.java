@@ -0,0 +1,103 @@
+package chessTests;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void storesAndProbes() {
+        var table = new TranspositionTable(1);
+        long key = 0x123456789ABCDEFL;
+        int move = Move.encode(12, 28, null, false);
+
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        table.store(key, move, -321, 7, TranspositionTable.Bound.LOWER);
+
+        long entry = table.probe(key);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-321, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.Bound.LOWER, TranspositionTable.bound(entry));
+        assertEquals(TranspositionTable.MISS, table.probe(key ^ 1L << 40));
+    }
+
+    @Test
+    void sizedFromBudget() {
+        assertEquals(1 << 16, new TranspositionTable(1).capacity()); // 16 bytes per entry
+        assertEquals(1 << 17, new TranspositionTable(2).capacity());
+        assertEquals(1 << 17, new TranspositionTable(3).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+    }
+
+    @Test
+    void deeperResultsSurviveShallowOnes() {
+        var table = new TranspositionTable(1);
+        long buckets = table.capacity() / 2;
+        long deep = 5;
+        long shallow = deep + buckets; // same bucket, different position
+        long shallower = deep + 2 * buckets;
+
+        table.store(deep, Move.NONE, 10, 9, TranspositionTable.Bound.EXACT);
+        table.store(shallow, Move.NONE, 20, 2, TranspositionTable.Bound.EXACT);
+        table.store(shallower, Move.NONE, 30, 1, TranspositionTable.Bound.EXACT);
+
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        assertEquals(TranspositionTable.MISS, table.probe(shallow)); // the always-replace slot moved on
+        assertEquals(30, TranspositionTable.score(table.probe(shallower)));
+
+        // a later search may overwrite the old deep entry
+        table.newSearch();
+        table.store(shallow, Move.NONE, 20, 2, TranspositionTable.Bound.EXACT);
+        assertEquals(TranspositionTable.MISS, table.probe(deep));
+        assertEquals(20, TranspositionTable.score(table.probe(shallow)));
+    }
+
+    @Test
+    void keepsBestMoveWhenNoneGiven() {
+        var table = new TranspositionTable(1);
+        int move = Move.encode(1, 18, null, false);
+        table.store(42, move, 0, 3, TranspositionTable.Bound.EXACT);
+        table.store(42, Move.NONE, 5, 4, TranspositionTable.Bound.UPPER);
+        assertEquals(move, TranspositionTable.move(table.probe(42)));
+        assertEquals(TranspositionTable.Bound.UPPER, TranspositionTable.bound(table.probe(42)));
+    }
+
+    // writers race on a small table; readers must never see an entry that doesn't belong to its key
+    @Test
+    void concurrentAccessNeverReturnsTornEntries() throws InterruptedException {
+        var table = new TranspositionTable(1);
+        var failed = new AtomicBoolean();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                var random = new Random(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = random.nextInt(1 << 18) * 0x9E3779B97F4A7C15L;
+                    if (random.nextBoolean()) {
+                        // every field is derived from the key so readers can check it
+                        table.store(key, (int) (key >>> 50), (short) key, (int) (key >>> 56), TranspositionTable.Bound.EXACT);
+                    } else {
+                        long entry = table.probe(key);
+                        if (entry != TranspositionTable.MISS && (TranspositionTable.score(entry) != (short) key
+                                || TranspositionTable.move(entry) != (int) (key >>> 50))) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed.get());
+    }
+}
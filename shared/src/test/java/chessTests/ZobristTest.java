@@ -0,0 +1,145 @@
+package chessTests;
+
+import chess.*;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZobristTest {
+
+    // the incrementally updated key must match the key of the same position built from scratch
+    @Test
+    void keyMatchesRebuiltBoardInRandomGames() throws InvalidMoveException {
+        var random = new Random(8);
+        for (int gameNumber = 0; gameNumber < 50; gameNumber++) {
+            var game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                var rebuilt = ChessBoard.parseFromString(game.serialize());
+                rebuilt.setTeamTurn(game.getTeamTurn());
+                assertEquals(rebuilt.getZobristKey(), game.getZobristKey(), "Key drifted on\n" + game.getBoard());
+                assertEquals(rebuilt, game.getBoard());
+                assertEquals(rebuilt.hashCode(), game.getBoard().hashCode());
+
+                var moves = new ArrayList<>(game.allValidMoves(game.getTeamTurn(), game.getBoard()));
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    // positions with no castling rights or en passant square hash to their published Polyglot keys
+    @Test
+    void keysArePolyglotKeys() {
+        assertEquals(0x00FDD303C946BDD9L,
+                ChessGame.fromFen("rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4").getZobristKey());
+        assertEquals(0x00FDD303C946BDD9L ^ 0xF8D626AAAF278509L,
+                ChessGame.fromFen("rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b - - 0 4").getZobristKey());
+    }
+
+    @Test
+    void unmakeRestoresKey() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        long start = board.getZobristKey();
+
+        board.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertNotEquals(start, board.getZobristKey());
+        board.unmakeMove();
+        assertEquals(start, board.getZobristKey());
+    }
+
+    @Test
+    void keyMatchesRebuiltBoardAfterMakeAndUnmake() {
+        var random = new Random(80);
+        var board = new ChessBoard();
+        board.resetBoard();
+        int depth = 0;
+        for (int step = 0; step < 2000; step++) {
+            var moves = new ArrayList<>(board.getAllMoves(board.getTeamTurn()));
+            if (depth > 0 && (moves.isEmpty() || random.nextInt(3) == 0)) {
+                board.unmakeMove();
+                depth--;
+            } else if (!moves.isEmpty()) {
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                depth++;
+            }
+            var rebuilt = ChessBoard.parseFromString(board.serialize());
+            rebuilt.setTeamTurn(board.getTeamTurn());
+            assertEquals(rebuilt.getZobristKey(), board.getZobristKey(), "Key drifted on\n" + board);
+        }
+    }
+
+    @Test
+    void resetForgetsMovesAndTurn() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        long start = board.getZobristKey();
+        board.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+
+        board.resetBoard();
+        assertEquals(ChessGame.TeamColor.WHITE, board.getTeamTurn());
+        assertEquals(start, board.getZobristKey());
+        assertThrows(IllegalStateException.class, board::unmakeMove);
+    }
+
+    @Test
+    void gsonCopyRebuildsKeyAndDropsUndoHistory() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        board.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        board.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        board.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+
+        var gson = new Gson();
+        var json = gson.toJson(board);
+        assertFalse(json.contains("undo"), json);
+        assertFalse(json.contains("Key"), json);
+
+        var copy = gson.fromJson(json, ChessBoard.class);
+        assertEquals(board, copy);
+        assertEquals(board.getTeamTurn(), copy.getTeamTurn());
+        assertEquals(board.getZobristKey(), copy.getZobristKey());
+        assertEquals(evaluate(board), evaluate(copy));
+        assertThrows(IllegalStateException.class, copy::unmakeMove);
+    }
+
+    @Test
+    void transpositionsShareKey() {
+        var first = new ChessBoard();
+        first.resetBoard();
+        var second = new ChessBoard(first);
+
+        first.makeMove(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null));
+        first.makeMove(new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null));
+        first.makeMove(new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null));
+        second.makeMove(new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null));
+        second.makeMove(new ChessMove(new ChessPosition(8, 2), new ChessPosition(6, 3), null));
+        second.makeMove(new ChessMove(new ChessPosition(1, 2), new ChessPosition(3, 3), null));
+
+        assertEquals(first.getZobristKey(), second.getZobristKey());
+    }
+
+    @Test
+    void sideToMoveChangesKeyButNotEquality() {
+        var white = new ChessBoard();
+        white.resetBoard();
+        var black = new ChessBoard(white);
+        black.setTeamTurn(ChessGame.TeamColor.BLACK);
+
+        assertNotEquals(white.getZobristKey(), black.getZobristKey());
+        assertEquals(white, black);
+        assertEquals(white.hashCode(), black.hashCode());
+    }
+
+    private static int evaluate(ChessBoard board) {
+        var game = new ChessGame();
+        game.setBoard(board);
+        return game.evaluate();
+    }
+}